@@ -0,0 +1,115 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs on a device because the parser reads through
+ * {@link android.util.JsonReader}, which is only a stub in local unit tests.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ForecastParserTest {
+
+    private static final String FORECAST = "{"
+            + "\"cod\":\"200\",\"cnt\":3,"
+            + "\"list\":["
+            + "{\"dt\":1699952400,\"main\":{\"temp\":12.6,\"feels_like\":11.2,\"pressure\":1009,\"humidity\":81},"
+            + "\"weather\":[{\"id\":500,\"main\":\"Rain\",\"description\":\"light rain\",\"icon\":\"10d\"},"
+            + "{\"id\":701,\"description\":\"mist\"}],"
+            + "\"clouds\":{\"all\":90},\"wind\":{\"speed\":4.5,\"deg\":200},\"visibility\":10000,"
+            + "\"dt_txt\":\"2023-11-14 09:00:00\"},"
+            + "{\"dt\":1699963200,\"main\":{\"temp\":\"14.4\",\"pressure\":1008,\"humidity\":76},"
+            + "\"weather\":[{\"id\":803,\"description\":\"broken clouds\"}],"
+            + "\"wind\":{\"speed\":3.1},\"visibility\":9000,\"dt_txt\":\"2023-11-14 12:00:00\"},"
+            + "{\"dt\":1700049600,\"main\":{\"temp\":-2.5,\"pressure\":1020,\"humidity\":60},"
+            + "\"weather\":[{\"id\":800,\"description\":\"clear sky\"}],"
+            + "\"wind\":{\"speed\":1.0},\"visibility\":10000,\"dt_txt\":\"2023-11-15 12:00:00\"}"
+            + "],"
+            + "\"city\":{\"id\":524901,\"name\":\"Moscow\",\"coord\":{\"lat\":55.7522,\"lon\":37.6156},"
+            + "\"country\":\"RU\",\"timezone\":10800}"
+            + "}";
+
+    private Locale previousLocale;
+
+    @Before
+    public void setUp() {
+        previousLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(previousLocale);
+    }
+
+    @Test
+    public void readsCurrentConditionsFromTheFirstEntry() throws IOException {
+        WeatherData data = parse(FORECAST);
+
+        assertEquals("Moscow, RU", data.location());
+        assertEquals("Light rain", data.description());
+        assertEquals(500, data.conditionId());
+        assertEquals("13", data.temperature());
+        assertEquals("81 %", data.humidity());
+        assertEquals("1009 hPa", data.pressure());
+        assertEquals("16.2 km/h", data.windSpeed());
+        assertEquals("10 km", data.visibility());
+    }
+
+    @Test
+    public void prefersMiddayEntriesForDailyForecasts() throws IOException {
+        List<WeatherData.DailyForecast> daily = parse(FORECAST).dailyForecasts();
+
+        assertEquals(2, daily.size());
+        assertEquals(new WeatherData.DailyForecast("Tue", "14°", 803, "Broken clouds"), daily.get(0));
+        assertEquals(new WeatherData.DailyForecast("Wed", "-2°", 800, "Clear sky"), daily.get(1));
+    }
+
+    @Test
+    public void keepsEveryEntryAsAnHourlyForecast() throws IOException {
+        List<WeatherData.HourlyForecast> hourly = parse(FORECAST).hourlyForecasts();
+
+        assertEquals(3, hourly.size());
+        assertEquals(new WeatherData.HourlyForecast(
+                1699963200L, "2023-11-14 12:00:00", 14.4, 76, 1008, 3.1, 9000, 803, "Broken clouds"),
+                hourly.get(1));
+    }
+
+    @Test
+    public void toleratesMissingOptionalFields() throws IOException {
+        WeatherData data = parse("{\"list\":[{\"dt\":1,\"main\":{},\"dt_txt\":\"\"}]}");
+
+        assertEquals("", data.location());
+        assertEquals("", data.temperature());
+        assertEquals("", data.humidity());
+        assertEquals("", data.windSpeed());
+        assertEquals("0 km", data.visibility());
+        assertTrue(data.dailyForecasts().isEmpty());
+        assertEquals(1, data.hourlyForecasts().size());
+    }
+
+    @Test
+    public void rejectsUnusablePayloads() {
+        assertThrows(ForecastParser.FormatException.class, () -> parse("{\"list\":[]}"));
+        assertThrows(ForecastParser.FormatException.class, () -> parse("{\"cod\":\"404\"}"));
+        assertThrows(ForecastParser.FormatException.class, () -> parse("[1, 2]"));
+    }
+
+    private static WeatherData parse(String json) throws IOException {
+        return ForecastParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,203 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot save and read cost of {@link LastWeatherStorage} next to the
+ * shared-preferences and JSON format it replaced, which is reproduced
+ * here. Logs the mean time and the bytes allocated per operation; the
+ * allocation figure is process-wide, so run it on an idle device.
+ * Skipped by connectedAndroidTest unless the build is given -Pbenchmarks.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LastWeatherStorageBenchmark {
+
+    private static final String TAG = "StorageBenchmark";
+    private static final String LEGACY_PREF_NAME = "last_weather_storage_benchmark";
+    private static final int WARMUP = 200;
+    private static final int OPERATIONS = 2_000;
+
+    private static final String FORECAST = "{\"list\":["
+            + entry(1699952400, "2023-11-14 09:00:00", 12.6, 500)
+            + "," + entry(1699963200, "2023-11-14 12:00:00", 14.4, 803)
+            + "," + entry(1700049600, "2023-11-15 12:00:00", -2.5, 800)
+            + "," + entry(1700136000, "2023-11-16 12:00:00", 1.5, 600)
+            + "," + entry(1700222400, "2023-11-17 12:00:00", 3.0, 801)
+            + "],\"city\":{\"name\":\"Moscow\",\"country\":\"RU\"}}";
+
+    private static Field cachedSnapshotField;
+
+    private Context context;
+    private SharedPreferences legacyPrefs;
+    private WeatherData data;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        legacyPrefs = context.getSharedPreferences(LEGACY_PREF_NAME, Context.MODE_PRIVATE);
+        legacyPrefs.edit().clear().commit();
+        data = ForecastParser.parse(new ByteArrayInputStream(FORECAST.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        legacyPrefs.edit().clear().commit();
+        context.deleteSharedPreferences(LEGACY_PREF_NAME);
+        File file = new File(context.getFilesDir(), "last_weather.snapshot");
+        file.delete();
+        new File(file.getPath() + ".bak").delete();
+        dropCachedSnapshot();
+    }
+
+    @Test
+    public void saveAndReadCost() throws Exception {
+        measure("legacy save (prefs apply + JSON)", () -> legacySave(legacyPrefs, data));
+        measure("snapshot save (memory + file writer)",
+                () -> LastWeatherStorage.save(context, data, System.currentTimeMillis()));
+
+        measure("legacy read (prefs + JSON)", () -> legacyRead(legacyPrefs));
+        measure("snapshot read, in memory", () -> LastWeatherStorage.read(context));
+        // Let the queued file writes finish so they do not overlap the cold reads.
+        awaitSnapshotWriter();
+        measure("snapshot read, mapped file", () -> {
+            dropCachedSnapshotQuietly();
+            LastWeatherStorage.read(context);
+        });
+
+        assertEquals(data.location(), legacyRead(legacyPrefs).city());
+        dropCachedSnapshot();
+        assertEquals(data.location(), LastWeatherStorage.read(context).city());
+        assertEquals(legacyRead(legacyPrefs).forecasts().length,
+                LastWeatherStorage.read(context).forecasts().length);
+    }
+
+    private static void measure(String label, Runnable operation) {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < OPERATIONS; i++) {
+            operation.run();
+        }
+        long nanos = SystemClock.elapsedRealtimeNanos() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Log.i(TAG, String.format(Locale.US, "%s: %.1f us/op, %d bytes/op",
+                label, nanos / 1_000.0 / OPERATIONS, allocated / OPERATIONS));
+    }
+
+    /** Bytes allocated by the process so far, or 0 where ART does not report it. */
+    private static long allocatedBytes() {
+        String value = Debug.getRuntimeStat("art.gc.bytes-allocated");
+        try {
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static void legacySave(SharedPreferences prefs, WeatherData data) {
+        JSONArray array = new JSONArray();
+        int max = Math.min(4, data.dailyForecasts().size());
+        for (int i = 0; i < max; i++) {
+            WeatherData.DailyForecast forecast = data.dailyForecasts().get(i);
+            JSONObject object = new JSONObject();
+            try {
+                object.put("day", forecast.dayLabel());
+                object.put("temp", forecast.temperature());
+                object.put("cond", forecast.conditionId());
+                array.put(object);
+            } catch (JSONException ignored) {}
+        }
+        prefs.edit()
+                .putString("city", data.location())
+                .putString("temperature", data.temperature())
+                .putInt("conditionId", data.conditionId())
+                .putString("forecasts", array.toString())
+                .putLong("savedAt", System.currentTimeMillis())
+                .apply();
+    }
+
+    private static LastWeatherStorage.WeatherSnapshot legacyRead(SharedPreferences prefs) {
+        String raw = prefs.getString("forecasts", "");
+        LastWeatherStorage.ForecastSnapshot[] forecasts = new LastWeatherStorage.ForecastSnapshot[0];
+        if (!TextUtils.isEmpty(raw)) {
+            try {
+                JSONArray array = new JSONArray(raw);
+                forecasts = new LastWeatherStorage.ForecastSnapshot[Math.min(4, array.length())];
+                for (int i = 0; i < forecasts.length; i++) {
+                    JSONObject object = array.optJSONObject(i);
+                    forecasts[i] = object != null
+                            ? new LastWeatherStorage.ForecastSnapshot(
+                                    object.optString("day", ""),
+                                    object.optString("temp", ""),
+                                    object.optInt("cond", 0))
+                            : new LastWeatherStorage.ForecastSnapshot("", "", 0);
+                }
+            } catch (JSONException ignored) {}
+        }
+        return new LastWeatherStorage.WeatherSnapshot(
+                prefs.getString("city", ""),
+                prefs.getString("temperature", ""),
+                prefs.getInt("conditionId", 0),
+                forecasts,
+                prefs.getLong("savedAt", 0L));
+    }
+
+    private static void awaitSnapshotWriter() throws Exception {
+        Field field = LastWeatherStorage.class.getDeclaredField("WRITER");
+        field.setAccessible(true);
+        ((ExecutorService) field.get(null)).submit(() -> {}).get(60, TimeUnit.SECONDS);
+    }
+
+    private static void dropCachedSnapshotQuietly() {
+        try {
+            dropCachedSnapshot();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void dropCachedSnapshot() throws Exception {
+        // Looked up once so the cold-read loop measures the read, not reflection.
+        if (cachedSnapshotField == null) {
+            cachedSnapshotField = LastWeatherStorage.class.getDeclaredField("cachedSnapshot");
+            cachedSnapshotField.setAccessible(true);
+        }
+        cachedSnapshotField.set(null, null);
+    }
+
+    private static String entry(long time, String text, double temperature, int conditionId) {
+        return String.format(Locale.US, "{\"dt\":%d,\"main\":{\"temp\":%.1f,\"pressure\":1010,"
+                + "\"humidity\":70},\"weather\":[{\"id\":%d,\"description\":\"sky\"}],"
+                + "\"wind\":{\"speed\":3.0},\"visibility\":10000,\"dt_txt\":\"%s\"}",
+                time, temperature, conditionId, text);
+    }
+}
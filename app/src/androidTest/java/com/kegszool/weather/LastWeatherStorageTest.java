@@ -0,0 +1,125 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Snapshot persistence on a device, where shared preferences, AtomicFile
+ * and org.json are real. The in-memory copy is dropped between steps so
+ * reads go to disk.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LastWeatherStorageTest {
+
+    private static final long TIMEOUT_MS = 5_000L;
+
+    private Context context;
+    private SharedPreferences prefs;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        prefs = context.getSharedPreferences("last_weather_storage", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        snapshotFile = new File(context.getFilesDir(), "last_weather.snapshot");
+        snapshotFile.delete();
+        new File(snapshotFile.getPath() + ".bak").delete();
+        dropCachedSnapshot();
+    }
+
+    @Test
+    public void migratesTheLegacySnapshotOnce() throws Exception {
+        prefs.edit()
+                .putString("city", "Moscow, RU")
+                .putString("temperature", "12")
+                .putInt("conditionId", 500)
+                .putString("forecasts", "[{\"day\":\"Tue\",\"temp\":\"14°\",\"cond\":803},"
+                        + "{\"day\":\"Wed\",\"temp\":\"-2°\",\"cond\":800}]")
+                .putLong("savedAt", 1_700_000_000_000L)
+                .putString("locationCity", "Moscow")
+                .commit();
+
+        LastWeatherStorage.WeatherSnapshot migrated = LastWeatherStorage.read(context);
+        assertLegacySnapshot(migrated);
+
+        waitUntil(() -> snapshotFile.isFile() && !prefs.contains("city"));
+        assertFalse(prefs.contains("forecasts"));
+        assertFalse(prefs.contains("savedAt"));
+        assertTrue(prefs.contains("locationCity"));
+
+        dropCachedSnapshot();
+        assertLegacySnapshot(LastWeatherStorage.read(context));
+    }
+
+    @Test
+    public void savedSnapshotSurvivesAProcessRestart() throws Exception {
+        WeatherData data = new WeatherData("Kazan, RU", "Clear sky", 800, "3", "60 %", "1020 hPa",
+                "3.6 km/h", "10 km",
+                List.of(new WeatherData.DailyForecast("Mon", "4°", 800, "Clear sky")),
+                null);
+        LastWeatherStorage.save(context, data, 1_700_000_100_000L);
+        waitUntil(snapshotFile::isFile);
+
+        dropCachedSnapshot();
+        LastWeatherStorage.WeatherSnapshot snapshot = LastWeatherStorage.read(context);
+
+        assertEquals("Kazan, RU", snapshot.city());
+        assertEquals("3", snapshot.temperature());
+        assertEquals(800, snapshot.conditionId());
+        assertEquals(1_700_000_100_000L, snapshot.savedAtMillis());
+        assertArrayEquals(new LastWeatherStorage.ForecastSnapshot[] {
+                new LastWeatherStorage.ForecastSnapshot("Mon", "4°", 800)
+        }, snapshot.forecasts());
+    }
+
+    @Test
+    public void nothingStoredReadsEmpty() throws Exception {
+        assertTrue(LastWeatherStorage.read(context).isEmpty());
+    }
+
+    private static void assertLegacySnapshot(LastWeatherStorage.WeatherSnapshot snapshot) {
+        assertEquals("Moscow, RU", snapshot.city());
+        assertEquals("12", snapshot.temperature());
+        assertEquals(500, snapshot.conditionId());
+        assertEquals(1_700_000_000_000L, snapshot.savedAtMillis());
+        assertArrayEquals(new LastWeatherStorage.ForecastSnapshot[] {
+                new LastWeatherStorage.ForecastSnapshot("Tue", "14°", 803),
+                new LastWeatherStorage.ForecastSnapshot("Wed", "-2°", 800)
+        }, snapshot.forecasts());
+    }
+
+    private static void dropCachedSnapshot() throws Exception {
+        Field field = LastWeatherStorage.class.getDeclaredField("cachedSnapshot");
+        field.setAccessible(true);
+        field.set(null, null);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for the snapshot writer");
+            }
+            SystemClock.sleep(10L);
+        }
+    }
+}
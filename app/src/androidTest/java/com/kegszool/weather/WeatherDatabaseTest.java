@@ -0,0 +1,130 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs on a device for a real SQLite database. The database thread is
+ * held with a blocking task where a test needs a write to stay pending.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherDatabaseTest {
+
+    private static final long TIMEOUT_MS = 5_000L;
+
+    private static final String FORECAST = "{"
+            + "\"list\":[{\"dt\":1699952400,\"main\":{\"temp\":12.6,\"pressure\":1009,\"humidity\":81},"
+            + "\"weather\":[{\"id\":500,\"description\":\"light rain\"}],"
+            + "\"wind\":{\"speed\":4.5},\"visibility\":10000,\"dt_txt\":\"2023-11-14 09:00:00\"}],"
+            + "\"city\":{\"name\":\"%s\",\"country\":\"RU\"}"
+            + "}";
+
+    private WeatherDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = WeatherDatabase.getInstance(context);
+        database.prune(0L);
+    }
+
+    @Test
+    public void pendingWriteIsReadBeforeItIsFlushed() throws Exception {
+        CountDownLatch release = holdDatabaseThread();
+        try {
+            database.putAsync("city:moscow", forecast("Moscow"));
+            database.putAsync("city:moscow", forecast("Moskva"));
+
+            WeatherDataStore.StoredWeather stored = database.get("city:moscow");
+            assertNotNull(stored);
+            assertEquals("Moskva, RU", stored.data().location());
+            assertFalse(isOnDisk("Moskva, RU"));
+        } finally {
+            release.countDown();
+        }
+
+        waitUntil(() -> isOnDisk("Moskva, RU"));
+        assertEquals("Moskva, RU", database.get("city:moscow").data().location());
+        assertFalse(isOnDisk("Moscow, RU"));
+    }
+
+    @Test
+    public void pruneDropsOnlyRowsOlderThanTheCutoff() throws Exception {
+        database.putAsync("city:perm", forecast("Perm"));
+        waitUntil(() -> isOnDisk("Perm, RU"));
+
+        assertEquals(0, database.prune(TimeUnit.DAYS.toMillis(1)));
+        assertNotNull(database.get("city:perm"));
+
+        SystemClock.sleep(20L);
+        assertEquals(1, database.prune(10L));
+        assertNull(database.get("city:perm"));
+        assertTrue(database.getRecent(10).isEmpty());
+    }
+
+    private boolean isOnDisk(String label) {
+        // getRecent only reads the table, never the pending writes.
+        for (WeatherDataStore.StoredWeather stored : database.getRecent(10)) {
+            if (label.equals(stored.data().location())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CountDownLatch holdDatabaseThread() throws Exception {
+        Field field = WeatherDatabase.class.getDeclaredField("executor");
+        field.setAccessible(true);
+        ExecutorService executor = (ExecutorService) field.get(database);
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            try {
+                release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(running.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        return release;
+    }
+
+    private static WeatherData forecast(String city) throws IOException {
+        return ForecastParser.parse(new ByteArrayInputStream(
+                String.format(FORECAST, city).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for the database thread");
+            }
+            SystemClock.sleep(10L);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.net.http.HttpResponseCache;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Revalidation through the platform response cache against a loopback
+ * server. Runs on a device because {@link HttpResponseCache} is only a stub
+ * in local unit tests; the debug build allows cleartext to 127.0.0.1.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherHttpCacheTest {
+
+    private static final String BODY = "{\"list\":[]}";
+    private static final String ETAG = "\"v1\"";
+
+    private final List<String> conditions = new CopyOnWriteArrayList<>();
+    private ServerSocket server;
+
+    @Before
+    public void setUp() throws IOException {
+        HttpResponseCache installed = HttpResponseCache.getInstalled();
+        if (installed != null) {
+            installed.delete();
+        }
+        WeatherHttpCache.install(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        assertNotNull(HttpResponseCache.getInstalled());
+
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(this::acceptLoop, "stub-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        HttpResponseCache.getInstalled().delete();
+    }
+
+    @Test
+    public void revalidatesWithTheStoredEtag() throws IOException {
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+        String url = "http://127.0.0.1:" + server.getLocalPort() + "/forecast";
+        int hitsBefore = WeatherHttpCache.getHitCount();
+
+        assertEquals(BODY, read(transport.get(url)));
+        assertEquals(BODY, read(transport.get(url)));
+
+        assertEquals(2, conditions.size());
+        assertNull(conditions.get(0));
+        assertEquals(ETAG, conditions.get(1));
+        assertEquals(hitsBefore + 1, WeatherHttpCache.getHitCount());
+    }
+
+    @Test
+    public void installIsIdempotent() {
+        HttpResponseCache installed = HttpResponseCache.getInstalled();
+
+        WeatherHttpCache.install(InstrumentationRegistry.getInstrumentation().getTargetContext());
+
+        assertEquals(installed, HttpResponseCache.getInstalled());
+        assertEquals(
+                WeatherHttpCache.getRequestCount() - WeatherHttpCache.getHitCount(),
+                WeatherHttpCache.getMissCount());
+    }
+
+    private static String read(WeatherTransport.Response response) throws IOException {
+        try (response) {
+            return new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket client = server.accept();
+                Thread handler = new Thread(() -> serve(client), "stub-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (client) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    client.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream output = client.getOutputStream();
+            while (reader.readLine() != null) {
+                String condition = null;
+                String line;
+                while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                    if (line.toLowerCase(Locale.ROOT).startsWith("if-none-match:")) {
+                        condition = line.substring(line.indexOf(':') + 1).trim();
+                    }
+                }
+                conditions.add(condition);
+                String response = ETAG.equals(condition)
+                        ? "HTTP/1.1 304 Not Modified\r\nETag: " + ETAG + "\r\n\r\n"
+                        : "HTTP/1.1 200 OK\r\n"
+                                + "Content-Type: application/json\r\n"
+                                + "Cache-Control: no-cache\r\n"
+                                + "ETag: " + ETAG + "\r\n"
+                                + "Content-Length: " + BODY.length() + "\r\n\r\n"
+                                + BODY;
+                output.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                output.flush();
+            }
+        } catch (IOException ignored) {
+            // Client went away.
+        }
+    }
+}
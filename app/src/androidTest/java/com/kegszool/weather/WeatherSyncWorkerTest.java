@@ -0,0 +1,231 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.Configuration;
+import androidx.work.ListenableWorker;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.TestListenableWorkerBuilder;
+import androidx.work.testing.TestWorkerBuilder;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+@RunWith(AndroidJUnit4.class)
+public class WeatherSyncWorkerTest {
+
+    private static final String PERIODIC_WORK = "weather_periodic_sync";
+    private static final String IMMEDIATE_WORK = "weather_sync_now";
+    private static final long TIMEOUT_MS = 5_000L;
+    private static final long NOW_MILLIS = 1_700_000_000_000L;
+
+    private static final String FORECAST = "{"
+            + "\"list\":[{\"dt\":1699952400,\"main\":{\"temp\":12.6,\"pressure\":1009,\"humidity\":81},"
+            + "\"weather\":[{\"id\":500,\"description\":\"light rain\"}],"
+            + "\"wind\":{\"speed\":4.5},\"visibility\":10000,\"dt_txt\":\"2023-11-14 09:00:00\"}],"
+            + "\"city\":{\"name\":\"Moscow\",\"country\":\"RU\"}"
+            + "}";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        WorkManagerTestInitHelper.initializeTestWorkManager(context, new Configuration.Builder()
+                .setMinimumLoggingLevel(Log.DEBUG)
+                .setExecutor(new SynchronousExecutor())
+                .build());
+    }
+
+    @After
+    public void tearDown() {
+        WeatherService.setTransport(new UrlConnectionTransport());
+        WeatherPublisher.setClock(System::currentTimeMillis);
+        WeatherSyncWorker.setApiKey(BuildConfig.OPEN_WEATHER_API_KEY);
+    }
+
+    @Test
+    public void periodicSyncIsScheduledOnce() throws Exception {
+        WeatherSyncWorker.schedule(context);
+        UUID first = single(PERIODIC_WORK).getId();
+        WeatherSyncWorker.schedule(context);
+
+        WorkInfo info = single(PERIODIC_WORK);
+        assertEquals(first, info.getId());
+        assertEquals(WorkInfo.State.ENQUEUED, info.getState());
+    }
+
+    @Test
+    public void syncNowReplacesAPendingRequest() throws Exception {
+        WeatherSyncWorker.syncNow(context);
+        WeatherSyncWorker.syncNow(context);
+
+        List<WorkInfo> infos = WorkManager.getInstance(context)
+                .getWorkInfosForUniqueWork(IMMEDIATE_WORK).get();
+        long pending = infos.stream().filter(info -> !info.getState().isFinished()).count();
+        assertEquals(1L, pending);
+    }
+
+    @Test
+    public void nothingToSyncSucceedsWithoutNetwork() {
+        context.getSharedPreferences("last_weather_storage", Context.MODE_PRIVATE)
+                .edit()
+                .clear()
+                .commit();
+
+        WeatherSyncWorker worker = TestWorkerBuilder
+                .from(context, WeatherSyncWorker.class, Executors.newSingleThreadExecutor())
+                .build();
+
+        assertEquals(ListenableWorker.Result.success(), worker.doWork());
+    }
+
+    @Test
+    public void syncStoresTheFetchedSnapshotAtTheClockTime() throws Exception {
+        clearStoredSnapshot();
+        StubTransport transport = new StubTransport(200, FORECAST);
+        useStubs(transport);
+
+        WeatherSyncWorker worker = TestListenableWorkerBuilder
+                .from(context, WeatherSyncWorker.class)
+                .build();
+
+        assertEquals(ListenableWorker.Result.success(), worker.doWork());
+        assertTrue(transport.requests.get() >= 1);
+        LastWeatherStorage.WeatherSnapshot snapshot = waitForStoredSnapshot(NOW_MILLIS);
+        assertEquals("Moscow, RU", snapshot.city());
+        assertEquals(500, snapshot.conditionId());
+    }
+
+    @Test
+    public void failedSyncRetriesAndKeepsTheStoredSnapshot() throws Exception {
+        clearStoredSnapshot();
+        useStubs(new StubTransport(200, FORECAST));
+        TestListenableWorkerBuilder.from(context, WeatherSyncWorker.class).build().doWork();
+        waitForStoredSnapshot(NOW_MILLIS);
+
+        useStubs(new StubTransport(404, "{\"message\":\"city not found\"}"));
+        WeatherPublisher.setClock(() -> NOW_MILLIS + 3_600_000L);
+        WeatherSyncWorker worker = TestListenableWorkerBuilder
+                .from(context, WeatherSyncWorker.class)
+                .build();
+
+        assertEquals(ListenableWorker.Result.retry(), worker.doWork());
+        dropCachedSnapshot();
+        assertEquals(NOW_MILLIS, LastWeatherStorage.read(context).savedAtMillis());
+    }
+
+    private void useStubs(StubTransport transport) {
+        WeatherService.setTransport(transport);
+        WeatherPublisher.setClock(() -> NOW_MILLIS);
+        WeatherSyncWorker.setApiKey("test-key");
+        LastWeatherStorage.saveLocation(context, WeatherLocation.ofCity("Moscow"));
+    }
+
+    /** Reads from disk until the background writer has stored the expected snapshot. */
+    private LastWeatherStorage.WeatherSnapshot waitForStoredSnapshot(long savedAtMillis) throws Exception {
+        waitUntil(() -> {
+            try {
+                dropCachedSnapshot();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+            return LastWeatherStorage.read(context).savedAtMillis() == savedAtMillis;
+        });
+        return LastWeatherStorage.read(context);
+    }
+
+    private void clearStoredSnapshot() throws Exception {
+        File file = new File(context.getFilesDir(), "last_weather.snapshot");
+        file.delete();
+        new File(file.getPath() + ".bak").delete();
+        dropCachedSnapshot();
+    }
+
+    private static void dropCachedSnapshot() throws Exception {
+        Field field = LastWeatherStorage.class.getDeclaredField("cachedSnapshot");
+        field.setAccessible(true);
+        field.set(null, null);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (SystemClock.uptimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for the snapshot writer");
+            }
+            SystemClock.sleep(10L);
+        }
+    }
+
+    private WorkInfo single(String uniqueName) throws Exception {
+        List<WorkInfo> infos = WorkManager.getInstance(context).getWorkInfosForUniqueWork(uniqueName).get();
+        assertEquals(1, infos.size());
+        return infos.get(0);
+    }
+
+    /** Answers every request with the same status and body. */
+    private static final class StubTransport implements WeatherTransport {
+
+        final AtomicInteger requests = new AtomicInteger();
+        private final int code;
+        private final String body;
+
+        StubTransport(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+
+        @Override
+        public Response get(String endpoint) {
+            requests.incrementAndGet();
+            return new Response() {
+                @Override
+                public int code() {
+                    return code;
+                }
+
+                @Override
+                public String header(String name) {
+                    return null;
+                }
+
+                @Override
+                public InputStream body() {
+                    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public Timings timings() {
+                    return null;
+                }
+
+                @Override
+                public void close() {}
+            };
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.kegszool.weather;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-host circuit breaker. Opens after a run of consecutive failures,
+ * fails fast while open and lets a single probe through once the cool-down
+ * has passed.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int FAILURE_THRESHOLD = 5;
+    private static final long OPEN_DURATION_MS = 30_000L;
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new HashMap<>();
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int failureThreshold, long openDurationMillis) {
+        this(failureThreshold, openDurationMillis, SystemClock::elapsedRealtime);
+    }
+
+    CircuitBreaker(int failureThreshold, long openDurationMillis, LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.clock = clock;
+    }
+
+    public static CircuitBreaker forHost(String host) {
+        String key = host != null ? host : "";
+        synchronized (BREAKERS) {
+            CircuitBreaker breaker = BREAKERS.get(key);
+            if (breaker == null) {
+                breaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_DURATION_MS);
+                BREAKERS.put(key, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && hasCooledDown()) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (!hasCooledDown()) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtMillis = clock.getAsLong();
+        }
+    }
+
+    /**
+     * Gives back a request allowed by {@link #allowRequest()} that ended
+     * without an outcome, such as a cancelled probe, so the next caller
+     * can probe instead.
+     */
+    public synchronized void releaseProbe() {
+        probeInFlight = false;
+    }
+
+    private boolean hasCooledDown() {
+        return clock.getAsLong() - openedAtMillis >= openDurationMillis;
+    }
+}
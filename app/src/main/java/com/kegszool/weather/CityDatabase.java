@@ -0,0 +1,598 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline city directory read straight from a memory-mapped buffer.
+ * A {@code cities.bin} asset, generated from a pinned GeoNames dump by
+ * the {@code generateCityDatabase} Gradle task before every build, is
+ * stored uncompressed and mapped with {@link FileChannel#map}. Release
+ * builds require it; debug builds without a configured dump get the same
+ * layout built in memory from {@link PopularCities}. Lookups compare UTF-8
+ * bytes in place, so only the returned cities allocate.
+ *
+ * <p>Layout: a 32-byte header, fixed-size city records (coordinates in
+ * micro-degrees, population, name and country offsets), name keys sorted
+ * by their normalized UTF-8 bytes (key offset, city index), a pool of
+ * length-prefixed UTF-8 strings and, for every one- and two-character key
+ * prefix, its most populous cities, since those prefixes match too many
+ * keys to rank on every keystroke.
+ */
+public final class CityDatabase {
+
+    static final int MAGIC = 0x43495459;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int CITY_RECORD_SIZE = 20;
+    static final int KEY_RECORD_SIZE = 8;
+    static final int SHORT_PREFIX_LENGTH = 2;
+    static final int SHORT_PREFIX_BYTES = 8;
+    static final int TOP_PREFIX_CITIES = 24;
+    static final int PREFIX_RECORD_SIZE = SHORT_PREFIX_BYTES + TOP_PREFIX_CITIES * 4;
+
+    private static final String TAG = "CityDatabase";
+    private static final String ASSET_NAME = "cities.bin";
+
+    private static final int NO_COORDINATE = Integer.MIN_VALUE;
+    private static final double COORDINATE_SCALE = 1_000_000d;
+    private static final int MAX_FUZZY_SCAN = 50_000;
+    private static final int MAX_QUERY_BYTES = 64;
+
+    private static final int MAX_FUZZY_DISTANCE = 2;
+
+    private static final ThreadLocal<FuzzyScratch> FUZZY_SCRATCH =
+            ThreadLocal.withInitial(FuzzyScratch::new);
+
+    private static volatile CityDatabase instance;
+
+    private final ByteBuffer buffer;
+    private final boolean isPackaged;
+    private final int cityCount;
+    private final int keyCount;
+    private final int cityTableOffset;
+    private final int keyTableOffset;
+    private final int stringsOffset;
+    private final int prefixTableOffset;
+    private final int prefixCount;
+
+    private CityDatabase(ByteBuffer buffer, boolean isPackaged) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a city database");
+        }
+        this.buffer = buffer;
+        this.isPackaged = isPackaged;
+        this.cityCount = buffer.getInt(8);
+        this.keyCount = buffer.getInt(12);
+        this.cityTableOffset = buffer.getInt(16);
+        this.keyTableOffset = buffer.getInt(20);
+        this.stringsOffset = buffer.getInt(24);
+        this.prefixTableOffset = buffer.getInt(28);
+        if (cityCount < 0 || keyCount < 0
+                || keyTableOffset < cityTableOffset + (long) cityCount * CITY_RECORD_SIZE
+                || stringsOffset < keyTableOffset + (long) keyCount * KEY_RECORD_SIZE
+                || prefixTableOffset < stringsOffset
+                || prefixTableOffset > buffer.capacity() - 4) {
+            throw new IOException("Corrupted city database header");
+        }
+        this.prefixCount = buffer.getInt(prefixTableOffset);
+        if (prefixCount < 0 || prefixTableOffset + 4 + (long) prefixCount * PREFIX_RECORD_SIZE
+                > buffer.capacity()) {
+            throw new IOException("Corrupted city database header");
+        }
+    }
+
+    /** Opens the packaged database, or the built-in fallback. Call off the main thread. */
+    public static CityDatabase getInstance(Context context) {
+        CityDatabase result = instance;
+        if (result == null) {
+            synchronized (CityDatabase.class) {
+                result = instance;
+                if (result == null) {
+                    result = open(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Reads a buffer in the {@link CityDatabaseWriter} layout. */
+    static CityDatabase wrap(ByteBuffer buffer) throws IOException {
+        return new CityDatabase(buffer, false);
+    }
+
+    public boolean isPackaged() {
+        return isPackaged;
+    }
+
+    public int size() {
+        return cityCount;
+    }
+
+    public double latitudeAt(int index) {
+        return decodeCoordinate(buffer.getInt(cityRecord(index)));
+    }
+
+    public double longitudeAt(int index) {
+        return decodeCoordinate(buffer.getInt(cityRecord(index) + 4));
+    }
+
+    public int populationAt(int index) {
+        return buffer.getInt(cityRecord(index) + 8);
+    }
+
+    public City get(int index) {
+        int record = cityRecord(index);
+        return new City(
+                index,
+                readString(buffer.getInt(record + 12)),
+                readString(buffer.getInt(record + 16)),
+                decodeCoordinate(buffer.getInt(record)),
+                decodeCoordinate(buffer.getInt(record + 4)),
+                buffer.getInt(record + 8)
+        );
+    }
+
+    /**
+     * Cities whose name or alias starts with {@code query}, most populous
+     * first. When there are fewer than {@code limit}, the rest is filled with
+     * names within a small edit distance of the query.
+     */
+    public List<City> search(String query, int limit) {
+        List<City> results = new ArrayList<>();
+        String normalized = normalize(query);
+        byte[] prefix = normalized.getBytes(StandardCharsets.UTF_8);
+        if (prefix.length == 0 || prefix.length > MAX_QUERY_BYTES || limit <= 0) {
+            return results;
+        }
+
+        int[] topCities = new int[limit];
+        long[] topScores = new long[limit];
+        int found;
+
+        int queryLength = normalized.codePointCount(0, normalized.length());
+        int prefixRecord = queryLength <= SHORT_PREFIX_LENGTH && limit <= TOP_PREFIX_CITIES
+                ? findPrefixRecord(prefix)
+                : -1;
+        if (prefixRecord >= 0) {
+            found = 0;
+            for (int i = 0; i < limit; i++) {
+                int city = buffer.getInt(prefixRecord + SHORT_PREFIX_BYTES + i * 4);
+                if (city < 0) {
+                    break;
+                }
+                topCities[found++] = city;
+            }
+        } else {
+            int start = lowerBound(prefix);
+            found = offerRange(start, prefixEnd(start, prefix), 0L, topCities, topScores, 0);
+        }
+
+        if (found < limit && queryLength >= 3) {
+            int maxDistance = queryLength <= 5 ? 1 : MAX_FUZZY_DISTANCE;
+            int[] queryCodePoints = normalized.codePoints().toArray();
+            byte[] firstChar = new String(Character.toChars(normalized.codePointAt(0)))
+                    .getBytes(StandardCharsets.UTF_8);
+            int[] fuzzyCities = new int[limit];
+            long[] fuzzyScores = new long[limit];
+            int fuzzyFound = fuzzySearch(
+                    firstChar, queryCodePoints, maxDistance, fuzzyCities, fuzzyScores);
+            for (int i = 0; i < fuzzyFound && found < limit; i++) {
+                if (!contains(topCities, found, fuzzyCities[i])) {
+                    topCities[found++] = fuzzyCities[i];
+                }
+            }
+        }
+
+        for (int i = 0; i < found; i++) {
+            results.add(get(topCities[i]));
+        }
+        return results;
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim()
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е')
+                .replace('-', ' ')
+                .replaceAll("\\s+", " ");
+    }
+
+    static int encodeCoordinate(double value) {
+        return Double.isNaN(value)
+                ? NO_COORDINATE
+                : (int) Math.round(value * COORDINATE_SCALE);
+    }
+
+    static int compareBytes(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int result = Integer.compare(left[i] & 0xFF, right[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(left.length, right.length);
+    }
+
+    private static CityDatabase open(Context context) {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(ASSET_NAME);
+             FileInputStream stream = descriptor.createInputStream();
+             FileChannel channel = stream.getChannel()
+        ) {
+            ByteBuffer mapped = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(),
+                    descriptor.getLength());
+            return new CityDatabase(mapped, true);
+        } catch (FileNotFoundException e) {
+            Log.i(TAG, "No packaged city database, using popular cities");
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to map the packaged city database", e);
+        }
+        try {
+            return new CityDatabase(buildFallback(), false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteBuffer buildFallback() {
+        Map<String, String> cities = PopularCities.getCities();
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        int rank = cities.size();
+        for (Map.Entry<String, String> entry : cities.entrySet()) {
+            double[] coordinates = PopularCities.getCoordinates(entry.getKey());
+            writer.add(
+                    entry.getKey(),
+                    "",
+                    coordinates != null ? coordinates[0] : Double.NaN,
+                    coordinates != null ? coordinates[1] : Double.NaN,
+                    rank--,
+                    entry.getValue());
+        }
+        return writer.build();
+    }
+
+    private static double decodeCoordinate(int value) {
+        return value == NO_COORDINATE ? Double.NaN : value / COORDINATE_SCALE;
+    }
+
+    private int cityRecord(int index) {
+        if (index < 0 || index >= cityCount) {
+            throw new IndexOutOfBoundsException("City " + index + " of " + cityCount);
+        }
+        return cityTableOffset + index * CITY_RECORD_SIZE;
+    }
+
+    private String readString(int offset) {
+        int position = stringsOffset + offset;
+        int length = buffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + 2);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int lowerBound(byte[] prefix) {
+        int low = 0;
+        int high = keyCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int keyOffset = buffer.getInt(keyTableOffset + middle * KEY_RECORD_SIZE);
+            if (compareKey(keyOffset, prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compareKey(int keyOffset, byte[] other) {
+        int position = stringsOffset + keyOffset;
+        int length = buffer.getShort(position) & 0xFFFF;
+        int common = Math.min(length, other.length);
+        for (int i = 0; i < common; i++) {
+            int result = Integer.compare(buffer.get(position + 2 + i) & 0xFF, other[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(length, other.length);
+    }
+
+    private boolean keyStartsWith(int keyOffset, byte[] prefix) {
+        int position = stringsOffset + keyOffset;
+        int length = buffer.getShort(position) & 0xFFFF;
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(position + 2 + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Record of the precomputed top cities for a short {@code prefix}, or -1. */
+    private int findPrefixRecord(byte[] prefix) {
+        if (prefix.length > SHORT_PREFIX_BYTES) {
+            return -1;
+        }
+        int low = 0;
+        int high = prefixCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = prefixTableOffset + 4 + middle * PREFIX_RECORD_SIZE;
+            int result = 0;
+            for (int i = 0; i < SHORT_PREFIX_BYTES && result == 0; i++) {
+                int expected = i < prefix.length ? prefix[i] & 0xFF : 0;
+                result = Integer.compare(buffer.get(record + i) & 0xFF, expected);
+            }
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    /** First key at or after {@code from} that does not start with {@code prefix}. */
+    private int prefixEnd(int from, byte[] prefix) {
+        int low = from;
+        int high = keyCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyStartsWith(buffer.getInt(keyTableOffset + middle * KEY_RECORD_SIZE), prefix)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Same as {@link #prefixEnd(int, byte[])} for a prefix stored in the
+     * buffer. Gallops from {@code from} first, since most such ranges are short.
+     */
+    private int prefixEnd(int from, int prefixPosition, int prefixLength) {
+        int low = from;
+        int high = keyCount;
+        for (int step = 1; low + step < keyCount; step <<= 1) {
+            int position = stringsOffset + buffer.getInt(keyTableOffset + (low + step) * KEY_RECORD_SIZE);
+            if (!startsWith(position, prefixPosition, prefixLength)) {
+                high = low + step;
+                break;
+            }
+            low += step;
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int position = stringsOffset + buffer.getInt(keyTableOffset + middle * KEY_RECORD_SIZE);
+            if (startsWith(position, prefixPosition, prefixLength)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean startsWith(int keyPosition, int prefixPosition, int prefixLength) {
+        if ((buffer.getShort(keyPosition) & 0xFFFF) < prefixLength) {
+            return false;
+        }
+        for (int i = 0; i < prefixLength; i++) {
+            if (buffer.get(keyPosition + 2 + i) != buffer.get(prefixPosition + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Offers the cities of keys {@code [from, to)} scored by {@code bonus} and population. */
+    private int offerRange(int from, int to, long bonus, int[] cities, long[] scores, int count) {
+        for (int i = from; i < to; i++) {
+            int city = buffer.getInt(keyTableOffset + i * KEY_RECORD_SIZE + 4);
+            long score = bonus | populationAt(city);
+            if (count == cities.length && score <= scores[count - 1]) {
+                continue;
+            }
+            count = offer(cities, scores, count, city, score);
+        }
+        return count;
+    }
+
+    /**
+     * Keys starting with {@code firstChar} whose closest prefix is within
+     * {@code maxDistance} character edits of {@code query}. The keys are
+     * sorted, so they are walked like a trie: edit distance rows are reused
+     * for the prefix a key shares with the previous one, and once a prefix
+     * settles the result, every key below it is taken or skipped together.
+     */
+    private int fuzzySearch(
+        byte[] firstChar,
+        int[] query,
+        int maxDistance,
+        int[] cities,
+        long[] scores
+    ) {
+        FuzzyScratch scratch = FUZZY_SCRATCH.get();
+        int[][] rows = scratch.rows;
+        int[] best = scratch.best;
+        int[] key = scratch.keyCodePoints;
+        int[] byteEnds = scratch.byteEnds;
+        int columns = query.length;
+        int maxDepth = query.length + maxDistance;
+        for (int j = 0; j <= columns; j++) {
+            rows[0][j] = j;
+        }
+        best[0] = columns;
+
+        int found = 0;
+        int validDepth = 0;
+        int index = lowerBound(firstChar);
+        int end = prefixEnd(index, firstChar);
+        for (int scanned = 0; index < end && scanned < MAX_FUZZY_SCAN; scanned++) {
+            int keyPosition = stringsOffset + buffer.getInt(keyTableOffset + index * KEY_RECORD_SIZE);
+            int keyEnd = keyPosition + 2 + (buffer.getShort(keyPosition) & 0xFFFF);
+            int keyLength = decodeCodePoints(keyPosition, scratch, maxDepth, validDepth);
+            int depth = Math.min(scratch.sharedDepth, keyLength);
+
+            while (depth < keyLength) {
+                int[] previous = rows[depth];
+                int[] current = rows[++depth];
+                int codePoint = key[depth - 1];
+                current[0] = depth;
+                int rowMin = depth;
+                for (int j = 1; j <= columns; j++) {
+                    int cost = codePoint == query[j - 1] ? 0 : 1;
+                    current[j] = Math.min(
+                            Math.min(current[j - 1] + 1, previous[j] + 1),
+                            previous[j - 1] + cost);
+                    rowMin = Math.min(rowMin, current[j]);
+                }
+                best[depth] = Math.min(best[depth - 1], current[columns]);
+                // Deeper rows never drop below this row's minimum.
+                if (rowMin > maxDistance || rowMin >= best[depth]) {
+                    break;
+                }
+            }
+            validDepth = depth;
+
+            int distance = best[depth];
+            int next = index + 1;
+            int settledBytes = depth > 0 ? byteEnds[depth - 1] - (keyPosition + 2) : 0;
+            if (depth > 0 && keyPosition + 2 + settledBytes < keyEnd) {
+                // Longer keys sharing these characters end up with the same distance.
+                next = prefixEnd(index, keyPosition + 2, settledBytes);
+            }
+            if (distance <= maxDistance) {
+                found = offerRange(index, next, (long) (maxDistance - distance) << 32,
+                        cities, scores, found);
+            }
+            index = next;
+        }
+        return found;
+    }
+
+    /**
+     * Decodes up to {@code limit} code points of the UTF-8 key at
+     * {@code position}, with the byte position after each one, and records
+     * in {@code sharedDepth} how many of the first {@code previousDepth} match
+     * the previously decoded key.
+     */
+    private int decodeCodePoints(int position, FuzzyScratch scratch, int limit, int previousDepth) {
+        int[] target = scratch.keyCodePoints;
+        int[] byteEnds = scratch.byteEnds;
+        int offset = position + 2;
+        int end = offset + (buffer.getShort(position) & 0xFFFF);
+        int count = 0;
+        int shared = -1;
+        while (offset < end && count < limit) {
+            int lead = buffer.get(offset) & 0xFF;
+            int size = lead < 0x80 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : 4;
+            int codePoint = size == 1 ? lead : lead & (0x7F >> size);
+            for (int i = 1; i < size && offset + i < end; i++) {
+                codePoint = (codePoint << 6) | (buffer.get(offset + i) & 0x3F);
+            }
+            if (shared < 0 && (count >= previousDepth || target[count] != codePoint)) {
+                shared = count;
+            }
+            target[count] = codePoint;
+            offset += size;
+            byteEnds[count++] = Math.min(offset, end);
+        }
+        scratch.sharedDepth = shared < 0 ? Math.min(count, previousDepth) : shared;
+        return count;
+    }
+
+    /** Keeps the highest scores in descending order; returns the new count. */
+    private static int offer(int[] cities, long[] scores, int count, int city, long score) {
+        for (int i = 0; i < count; i++) {
+            if (cities[i] == city) {
+                if (scores[i] >= score) {
+                    return count;
+                }
+                System.arraycopy(cities, i + 1, cities, i, count - i - 1);
+                System.arraycopy(scores, i + 1, scores, i, count - i - 1);
+                count--;
+                break;
+            }
+        }
+        int position = count;
+        while (position > 0 && scores[position - 1] < score) {
+            position--;
+        }
+        if (position >= cities.length) {
+            return count;
+        }
+        int moved = Math.min(count, cities.length - 1) - position;
+        if (moved > 0) {
+            System.arraycopy(cities, position, cities, position + 1, moved);
+            System.arraycopy(scores, position, scores, position + 1, moved);
+        }
+        cities[position] = city;
+        scores[position] = score;
+        return Math.min(count + 1, cities.length);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class FuzzyScratch {
+        final int[][] rows = new int[MAX_QUERY_BYTES + MAX_FUZZY_DISTANCE + 1][MAX_QUERY_BYTES + 1];
+        final int[] best = new int[MAX_QUERY_BYTES + MAX_FUZZY_DISTANCE + 1];
+        final int[] keyCodePoints = new int[MAX_QUERY_BYTES + MAX_FUZZY_DISTANCE];
+        final int[] byteEnds = new int[MAX_QUERY_BYTES + MAX_FUZZY_DISTANCE];
+        int sharedDepth;
+    }
+
+    public record City(
+        int index,
+        String name,
+        String country,
+        double latitude,
+        double longitude,
+        int population
+    ) {
+        public String label() {
+            return country.isEmpty() ? name : name + ", " + country;
+        }
+
+        public boolean hasCoordinates() {
+            return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+        }
+    }
+}
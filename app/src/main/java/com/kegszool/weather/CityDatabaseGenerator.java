@@ -0,0 +1,146 @@
+package com.kegszool.weather;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Build-time tool that turns a GeoNames cities dump ({@code cities500.zip},
+ * {@code cities15000.txt}, ...) into the {@code cities.bin} asset read by
+ * {@link CityDatabase}. The {@code generateCityDatabase} Gradle task runs it
+ * before every build; it is not used by the app at runtime.
+ */
+final class CityDatabaseGenerator {
+
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_ASCII_NAME = 2;
+    private static final int COLUMN_ALTERNATE_NAMES = 3;
+    private static final int COLUMN_LATITUDE = 4;
+    private static final int COLUMN_LONGITUDE = 5;
+    private static final int COLUMN_COUNTRY = 8;
+    private static final int COLUMN_POPULATION = 14;
+
+    private static final int MAX_ALIASES = 6;
+    private static final int MAX_ALIAS_LENGTH = 48;
+
+    private CityDatabaseGenerator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args[0].isEmpty()) {
+            System.err.println("Usage: CityDatabaseGenerator <geonames-cities.txt|.zip> <cities.bin> [minPopulation]");
+            System.exit(2);
+        }
+        int minPopulation = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        int count = read(new File(args[0]), minPopulation, writer);
+        File output = new File(args[1]);
+        write(writer.build(), output);
+        System.out.println("Wrote " + count + " cities to " + output + " (" + output.length() + " bytes)");
+    }
+
+    static int read(File input, int minPopulation, CityDatabaseWriter writer) throws IOException {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                open(input), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t", -1);
+                if (columns.length <= COLUMN_POPULATION) {
+                    continue;
+                }
+                int population = parsePopulation(columns[COLUMN_POPULATION]);
+                if (population < minPopulation) {
+                    continue;
+                }
+                writer.add(
+                        columns[COLUMN_NAME],
+                        columns[COLUMN_COUNTRY],
+                        Double.parseDouble(columns[COLUMN_LATITUDE]),
+                        Double.parseDouble(columns[COLUMN_LONGITUDE]),
+                        population,
+                        aliases(columns[COLUMN_ASCII_NAME], columns[COLUMN_ALTERNATE_NAMES]));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** The dump itself, or the first {@code .txt} entry of a zipped one as GeoNames ships it. */
+    private static InputStream open(File input) throws IOException {
+        if (!input.getName().endsWith(".zip")) {
+            return new FileInputStream(input);
+        }
+        ZipInputStream zip = new ZipInputStream(new FileInputStream(input));
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.getName().endsWith(".txt")) {
+                return zip;
+            }
+        }
+        zip.close();
+        throw new IOException("No cities list in " + input);
+    }
+
+    /** The ASCII name plus a few Latin or Cyrillic alternate names, the scripts the app searches in. */
+    private static String[] aliases(String asciiName, String alternateNames) {
+        List<String> aliases = new ArrayList<>();
+        aliases.add(asciiName);
+        for (String name : alternateNames.split(",")) {
+            if (aliases.size() == MAX_ALIASES) {
+                break;
+            }
+            if (!name.isEmpty() && name.length() <= MAX_ALIAS_LENGTH && isLatinOrCyrillic(name)) {
+                aliases.add(name);
+            }
+        }
+        return aliases.toArray(new String[0]);
+    }
+
+    private static boolean isLatinOrCyrillic(String name) {
+        for (int i = 0; i < name.length(); ) {
+            int codePoint = name.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (!Character.isLetter(codePoint)) {
+                continue;
+            }
+            Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+            if (script != Character.UnicodeScript.LATIN && script != Character.UnicodeScript.CYRILLIC) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parsePopulation(String value) {
+        try {
+            return (int) Math.min(Integer.MAX_VALUE, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void write(ByteBuffer buffer, File output) throws IOException {
+        File parent = output.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        try (FileOutputStream stream = new FileOutputStream(output);
+             FileChannel channel = stream.getChannel()) {
+            ByteBuffer source = buffer.duplicate();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.kegszool.weather;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the binary layout read by {@link CityDatabase}. Used for the
+ * built-in fallback and by {@link CityDatabaseGenerator} to produce the
+ * {@code cities.bin} asset.
+ */
+final class CityDatabaseWriter {
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(
+        String name,
+        String country,
+        double latitude,
+        double longitude,
+        int population,
+        String... aliases
+    ) {
+        entries.add(new Entry(name, country, latitude, longitude, population, aliases));
+    }
+
+    ByteBuffer build() {
+
+        Map<String, Integer> stringOffsets = new LinkedHashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] stringsSize = {0};
+
+        int[] nameOffsets = new int[entries.size()];
+        int[] countryOffsets = new int[entries.size()];
+        List<byte[]> keyBytes = new ArrayList<>();
+        List<Integer> keyCities = new ArrayList<>();
+        List<Integer> keyOffsets = new ArrayList<>();
+        Map<String, int[]> topCitiesByPrefix = new HashMap<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            nameOffsets[i] = intern(entry.name(), stringOffsets, strings, stringsSize);
+            countryOffsets[i] = intern(entry.country(), stringOffsets, strings, stringsSize);
+
+            List<String> names = new ArrayList<>();
+            names.add(entry.name());
+            if (entry.aliases() != null) {
+                names.addAll(Arrays.asList(entry.aliases()));
+            }
+            List<String> seenKeys = new ArrayList<>();
+            for (String name : names) {
+                String key = CityDatabase.normalize(name);
+                if (key.isEmpty() || seenKeys.contains(key)) {
+                    continue;
+                }
+                seenKeys.add(key);
+                keyOffsets.add(intern(key, stringOffsets, strings, stringsSize));
+                keyBytes.add(key.getBytes(StandardCharsets.UTF_8));
+                keyCities.add(i);
+                int codePoints = key.codePointCount(0, key.length());
+                for (int length = 1; length <= Math.min(codePoints, CityDatabase.SHORT_PREFIX_LENGTH); length++) {
+                    String prefix = key.substring(0, key.offsetByCodePoints(0, length));
+                    offerTopCity(topCitiesByPrefix.computeIfAbsent(prefix, unused -> newTopCities()), i);
+                }
+            }
+        }
+        List<String> prefixes = new ArrayList<>(topCitiesByPrefix.keySet());
+        List<byte[]> prefixBytes = new ArrayList<>();
+        for (String prefix : prefixes) {
+            prefixBytes.add(prefix.getBytes(StandardCharsets.UTF_8));
+        }
+        Integer[] prefixOrder = new Integer[prefixes.size()];
+        for (int i = 0; i < prefixOrder.length; i++) {
+            prefixOrder[i] = i;
+        }
+        Arrays.sort(prefixOrder, (left, right) ->
+                CityDatabase.compareBytes(prefixBytes.get(left), prefixBytes.get(right)));
+
+        Integer[] order = new Integer[keyBytes.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> {
+            int result = CityDatabase.compareBytes(keyBytes.get(left), keyBytes.get(right));
+            if (result != 0) {
+                return result;
+            }
+            return Integer.compare(
+                    entries.get(keyCities.get(right)).population(),
+                    entries.get(keyCities.get(left)).population());
+        });
+
+        int cityTableOffset = CityDatabase.HEADER_SIZE;
+        int keyTableOffset = cityTableOffset + entries.size() * CityDatabase.CITY_RECORD_SIZE;
+        int stringsOffset = keyTableOffset + order.length * CityDatabase.KEY_RECORD_SIZE;
+        int prefixTableOffset = stringsOffset + stringsSize[0];
+
+        ByteBuffer buffer = ByteBuffer.allocate(
+                prefixTableOffset + 4 + prefixOrder.length * CityDatabase.PREFIX_RECORD_SIZE);
+        buffer.putInt(CityDatabase.MAGIC)
+                .putInt(CityDatabase.VERSION)
+                .putInt(entries.size())
+                .putInt(order.length)
+                .putInt(cityTableOffset)
+                .putInt(keyTableOffset)
+                .putInt(stringsOffset)
+                .putInt(prefixTableOffset);
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            buffer.putInt(CityDatabase.encodeCoordinate(entry.latitude()))
+                    .putInt(CityDatabase.encodeCoordinate(entry.longitude()))
+                    .putInt(Math.max(0, entry.population()))
+                    .putInt(nameOffsets[i])
+                    .putInt(countryOffsets[i]);
+        }
+        for (Integer index : order) {
+            buffer.putInt(keyOffsets.get(index)).putInt(keyCities.get(index));
+        }
+        for (byte[] string : strings) {
+            buffer.putShort((short) string.length).put(string);
+        }
+        buffer.putInt(prefixOrder.length);
+        for (Integer index : prefixOrder) {
+            byte[] prefix = prefixBytes.get(index);
+            buffer.put(prefix).put(new byte[CityDatabase.SHORT_PREFIX_BYTES - prefix.length]);
+            for (int city : topCitiesByPrefix.get(prefixes.get(index))) {
+                buffer.putInt(city);
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static int[] newTopCities() {
+        int[] cities = new int[CityDatabase.TOP_PREFIX_CITIES];
+        Arrays.fill(cities, -1);
+        return cities;
+    }
+
+    /** Keeps the most populous cities first; ties keep the earlier city. */
+    private void offerTopCity(int[] cities, int city) {
+        int population = entries.get(city).population();
+        int position = cities.length;
+        for (int i = 0; i < cities.length; i++) {
+            if (cities[i] == city) {
+                return;
+            }
+            if (position == cities.length
+                    && (cities[i] < 0 || entries.get(cities[i]).population() < population)) {
+                position = i;
+            }
+        }
+        if (position == cities.length) {
+            return;
+        }
+        int last = cities.length - 1;
+        System.arraycopy(cities, position, cities, position + 1, last - position);
+        cities[position] = city;
+    }
+
+    private static int intern(
+        String value,
+        Map<String, Integer> offsets,
+        List<byte[]> strings,
+        int[] size
+    ) {
+        String safeValue = value != null ? value : "";
+        Integer existing = offsets.get(safeValue);
+        if (existing != null) {
+            return existing;
+        }
+        byte[] bytes = safeValue.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            bytes = Arrays.copyOf(bytes, 0xFFFF);
+        }
+        int offset = size[0];
+        offsets.put(safeValue, offset);
+        strings.add(bytes);
+        size[0] += 2 + bytes.length;
+        return offset;
+    }
+
+    private record Entry(
+        String name,
+        String country,
+        double latitude,
+        double longitude,
+        int population,
+        String[] aliases
+    ) {}
+}
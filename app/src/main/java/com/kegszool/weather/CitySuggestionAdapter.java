@@ -0,0 +1,87 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Suggestion list fed with precomputed results. Filtering is done by
+ * {@link CitySuggestionIndex} off the main thread, so the built-in filter
+ * only reports the current items back to the text view.
+ */
+final class CitySuggestionAdapter extends BaseAdapter implements Filterable {
+
+    private final LayoutInflater inflater;
+    private List<String> items = new ArrayList<>();
+
+    private final Filter passThroughFilter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<String> current = items;
+            results.values = current;
+            results.count = current.size();
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence constraint, FilterResults results) {}
+    };
+
+    CitySuggestionAdapter(Context context) {
+        this.inflater = LayoutInflater.from(context);
+    }
+
+    /** Returns {@code true} if the list changed and the view was notified. */
+    boolean submitList(List<String> newItems) {
+        List<String> next = newItems != null ? newItems : new ArrayList<>();
+        if (next.equals(items)) {
+            return false;
+        }
+        items = next;
+        if (next.isEmpty()) {
+            notifyDataSetInvalidated();
+        } else {
+            notifyDataSetChanged();
+        }
+        return true;
+    }
+
+    @Override
+    public int getCount() {
+        return items.size();
+    }
+
+    @Override
+    public String getItem(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView != null
+                ? convertView
+                : inflater.inflate(R.layout.item_city_suggestion, parent, false);
+        TextView textView = view.findViewById(R.id.citySuggestionText);
+        textView.setText(items.get(position));
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return passThroughFilter;
+    }
+}
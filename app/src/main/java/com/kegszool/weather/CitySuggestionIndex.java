@@ -0,0 +1,132 @@
+package com.kegszool.weather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prefix index over the English and Russian names of {@link PopularCities}.
+ * Names are lowercased once and kept in a sorted array, so a query is a
+ * binary search plus a scan over the matching range. Labels are built once
+ * and results keep the original city order.
+ */
+final class CitySuggestionIndex {
+
+    static final String LABEL_SEPARATOR = " / ";
+
+    private static volatile CitySuggestionIndex instance;
+
+    private final String[] englishNames;
+    private final List<String> labels;
+    private final String[] sortedKeys;
+    private final int[] sortedOrdinals;
+    private final Map<String, String> englishByName;
+    private final Map<String, String> labelByEnglish;
+
+    private CitySuggestionIndex(Map<String, String> cities) {
+
+        int count = cities.size();
+        englishNames = new String[count];
+        String[] labelArray = new String[count];
+        englishByName = new HashMap<>(count * 4);
+        labelByEnglish = new HashMap<>(count * 2);
+
+        List<Key> keys = new ArrayList<>(count * 2);
+        int ordinal = 0;
+        for (Map.Entry<String, String> entry : cities.entrySet()) {
+            String englishName = entry.getKey();
+            String russianName = entry.getValue();
+            englishNames[ordinal] = englishName;
+            labelArray[ordinal] = englishName + LABEL_SEPARATOR + russianName;
+            labelByEnglish.put(englishName, labelArray[ordinal]);
+
+            String englishKey = normalize(englishName);
+            String russianKey = normalize(russianName);
+            keys.add(new Key(englishKey, ordinal));
+            englishByName.put(englishKey, englishName);
+            if (!russianKey.isEmpty()) {
+                keys.add(new Key(russianKey, ordinal));
+                englishByName.put(russianKey, englishName);
+            }
+            ordinal++;
+        }
+        Collections.sort(keys, (left, right) -> left.value().compareTo(right.value()));
+
+        labels = Collections.unmodifiableList(Arrays.asList(labelArray));
+        sortedKeys = new String[keys.size()];
+        sortedOrdinals = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            sortedKeys[i] = keys.get(i).value();
+            sortedOrdinals[i] = keys.get(i).ordinal();
+        }
+    }
+
+    static CitySuggestionIndex getInstance() {
+        CitySuggestionIndex result = instance;
+        if (result == null) {
+            synchronized (CitySuggestionIndex.class) {
+                result = instance;
+                if (result == null) {
+                    result = new CitySuggestionIndex(PopularCities.getCities());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    List<String> query(String rawQuery) {
+        String prefix = normalize(rawQuery);
+        if (prefix.isEmpty()) {
+            return labels;
+        }
+        BitSet matches = new BitSet(labels.size());
+        int index = lowerBound(prefix);
+        while (index < sortedKeys.length && sortedKeys[index].startsWith(prefix)) {
+            matches.set(sortedOrdinals[index]);
+            index++;
+        }
+        List<String> results = new ArrayList<>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            results.add(labels.get(ordinal));
+        }
+        return results;
+    }
+
+    /** English name for an exact English or Russian city name, or {@code null}. */
+    String findEnglishName(String name) {
+        return englishByName.get(normalize(name));
+    }
+
+    /** Suggestion label for an English name from {@link PopularCities}, or {@code null}. */
+    String labelFor(String englishName) {
+        return labelByEnglish.get(englishName);
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = sortedKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedKeys[middle].compareTo(prefix) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String normalize(String value) {
+        return value != null
+                ? value.trim().toLowerCase(Locale.ROOT)
+                : "";
+    }
+
+    private record Key(String value, int ordinal) {}
+}
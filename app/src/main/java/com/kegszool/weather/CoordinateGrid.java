@@ -0,0 +1,66 @@
+package com.kegszool.weather;
+
+import java.util.Locale;
+
+/**
+ * Fixed-degree grid used to snap coordinates before a request or cache
+ * lookup, so GPS jitter within one cell maps to the same forecast.
+ */
+public final class CoordinateGrid {
+
+    /** About 1 km at the equator, for explicit map picks. */
+    public static final CoordinateGrid FINE = new CoordinateGrid(0.01d);
+
+    /** About 5 km at the equator, below the forecast model resolution. */
+    public static final CoordinateGrid DEFAULT = new CoordinateGrid(0.05d);
+
+    /** About 25 km at the equator, for zoomed-out map previews. */
+    public static final CoordinateGrid COARSE = new CoordinateGrid(0.25d);
+
+    private final double cellDegrees;
+
+    public CoordinateGrid(double cellDegrees) {
+        if (!(cellDegrees > 0d) || cellDegrees > 10d) {
+            throw new IllegalArgumentException("Cell size must be in (0, 10] degrees");
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    public double getCellDegrees() {
+        return cellDegrees;
+    }
+
+    public Cell snap(double latitude, double longitude) {
+        double clampedLatitude = Math.max(-90d, Math.min(90d, latitude));
+        double wrappedLongitude = ((longitude + 180d) % 360d + 360d) % 360d - 180d;
+
+        long latitudeIndex = (long) Math.floor(clampedLatitude / cellDegrees);
+        long longitudeIndex = (long) Math.floor(wrappedLongitude / cellDegrees);
+        return new Cell(this, latitudeIndex, longitudeIndex);
+    }
+
+    public record Cell(
+        CoordinateGrid grid,
+        long latitudeIndex,
+        long longitudeIndex
+    ) {
+        public double centerLatitude() {
+            double center = (latitudeIndex + 0.5d) * grid.cellDegrees;
+            return Math.max(-90d, Math.min(90d, center));
+        }
+
+        public double centerLongitude() {
+            return (longitudeIndex + 0.5d) * grid.cellDegrees;
+        }
+
+        public String key() {
+            return String.format(
+                    Locale.US,
+                    "%s:%d,%d",
+                    grid.cellDegrees,
+                    latitudeIndex,
+                    longitudeIndex
+            );
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.kegszool.weather;
+
+import android.annotation.SuppressLint;
+import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single-pass parser for the OpenWeather {@code /forecast} payload.
+ * Reads tokens straight from the response stream and keeps only the
+ * fields the app displays instead of materializing the whole JSON tree.
+ */
+public final class ForecastParser {
+
+    private static final int MAX_FORECAST_DAYS = 4;
+
+    private static final ThreadLocal<DecimalFormat> WIND_SPEED_FORMAT =
+            ThreadLocal.withInitial(() -> new DecimalFormat("0.0"));
+
+    private static final ThreadLocal<SimpleDateFormat> INPUT_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US));
+
+    private static final ThreadLocal<SimpleDateFormat> FALLBACK_INPUT_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd", Locale.US));
+
+    @SuppressLint("ConstantLocale")
+    private static final ThreadLocal<SimpleDateFormat> DAY_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("EEE", Locale.getDefault()));
+
+    private ForecastParser() {}
+
+    public static WeatherData parse(InputStream stream) throws IOException {
+
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(stream, StandardCharsets.UTF_8));
+        try {
+            return parse(reader);
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            throw new FormatException("Malformed forecast data", e);
+        }
+    }
+
+    private static WeatherData parse(JsonReader reader) throws IOException {
+
+        String location = "";
+        List<Entry> entries = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("list".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                readEntries(reader, entries);
+            } else if ("city".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                location = readLocation(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (entries.isEmpty()) {
+            throw new FormatException("Empty forecast data", null);
+        }
+
+        Entry first = entries.get(0);
+        boolean isRussian = isRussianLocale();
+
+        String temperature = !Double.isNaN(first.temperature)
+                ? String.valueOf(Math.round(first.temperature))
+                : "";
+        String humidity = first.humidity != null
+                ? first.humidity + " %"
+                : "";
+        String pressure = first.pressure != null
+                ? first.pressure + (isRussian ? " гПа" : " hPa")
+                : "";
+
+        String windSpeed = "";
+        if (first.hasWind) {
+            double windKilometersPerHour = first.windSpeed * 3.6d;
+            windSpeed = WIND_SPEED_FORMAT.get().format(windKilometersPerHour) + (isRussian ? " км/ч" : " km/h");
+        }
+
+        return new WeatherData(
+                location,
+                formatDescription(first.description),
+                first.conditionId,
+                temperature,
+                humidity,
+                pressure,
+                windSpeed,
+                formatVisibility(first.visibility, isRussian),
+                buildDailyForecasts(entries),
+                buildHourlyForecasts(entries)
+        );
+    }
+
+    private static void readEntries(JsonReader reader, List<Entry> entries) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                entries.add(readEntry(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+    }
+
+    private static Entry readEntry(JsonReader reader) throws IOException {
+
+        Entry entry = new Entry();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            switch (name) {
+                case "main" -> {
+                    if (token == JsonToken.BEGIN_OBJECT) {
+                        readMain(reader, entry);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                case "weather" -> {
+                    if (token == JsonToken.BEGIN_ARRAY) {
+                        readWeather(reader, entry);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                case "wind" -> {
+                    if (token == JsonToken.BEGIN_OBJECT) {
+                        readWind(reader, entry);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                case "dt" -> entry.timestamp = (long) readDouble(reader, 0d);
+                case "visibility" -> entry.visibility = (int) readDouble(reader, 0d);
+                case "dt_txt" -> entry.dateTime = readString(reader, "");
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return entry;
+    }
+
+    private static void readMain(JsonReader reader, Entry entry) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "temp" -> entry.temperature = readDouble(reader, Double.NaN);
+                case "humidity" -> entry.humidity = (int) readDouble(reader, 0d);
+                case "pressure" -> entry.pressure = (int) readDouble(reader, 0d);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readWeather(JsonReader reader, Entry entry) throws IOException {
+        reader.beginArray();
+        boolean isFirst = true;
+        while (reader.hasNext()) {
+            if (isFirst && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    switch (name) {
+                        case "id" -> entry.conditionId = (int) readDouble(reader, 0d);
+                        case "description" -> entry.description = readString(reader, "");
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+            isFirst = false;
+        }
+        reader.endArray();
+    }
+
+    private static void readWind(JsonReader reader, Entry entry) throws IOException {
+        entry.hasWind = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("speed".equals(reader.nextName())) {
+                entry.windSpeed = readDouble(reader, 0d);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String readLocation(JsonReader reader) throws IOException {
+
+        String name = "";
+        String country = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> name = readString(reader, "");
+                case "country" -> country = readString(reader, "");
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!name.isEmpty() && !country.isEmpty()) {
+            return name + ", " + country;
+        } else if (!name.isEmpty()) {
+            return name;
+        } else if (!country.isEmpty()) {
+            return country;
+        }
+        return "";
+    }
+
+    private static double readDouble(JsonReader reader, double fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            try {
+                return reader.nextDouble();
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+        reader.skipValue();
+        return fallback;
+    }
+
+    private static String readString(JsonReader reader, String fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return fallback;
+    }
+
+    private static List<WeatherData.DailyForecast> buildDailyForecasts(List<Entry> entries) {
+
+        Map<String, Entry> dayToForecast = new LinkedHashMap<>();
+        for (Entry item : entries) {
+
+            String dtTxt = item.dateTime;
+            if (dtTxt.length() < 10) {
+                continue;
+            }
+
+            String dateKey = dtTxt.substring(0, 10);
+            Entry existing = dayToForecast.get(dateKey);
+            if (existing == null || dtTxt.contains("12:00:00")) {
+                dayToForecast.put(dateKey, item);
+            }
+        }
+
+        List<WeatherData.DailyForecast> results = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : dayToForecast.entrySet()) {
+            if (results.size() >= MAX_FORECAST_DAYS) {
+                break;
+            }
+            Entry forecast = entry.getValue();
+            String dayLabel = formatDayLabel(forecast.dateTime, entry.getKey());
+            String temperature = !Double.isNaN(forecast.temperature)
+                    ? Math.round(forecast.temperature) + "°"
+                    : "";
+            results.add(new WeatherData.DailyForecast(
+                    dayLabel,
+                    temperature,
+                    forecast.conditionId,
+                    formatDescription(forecast.description)
+            ));
+        }
+        return results;
+    }
+
+    private static List<WeatherData.HourlyForecast> buildHourlyForecasts(List<Entry> entries) {
+        List<WeatherData.HourlyForecast> results = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            results.add(new WeatherData.HourlyForecast(
+                    entry.timestamp,
+                    entry.dateTime,
+                    entry.temperature,
+                    entry.humidity != null ? entry.humidity : 0,
+                    entry.pressure != null ? entry.pressure : 0,
+                    entry.windSpeed,
+                    entry.visibility,
+                    entry.conditionId,
+                    formatDescription(entry.description)
+            ));
+        }
+        return results;
+    }
+
+    private static String formatDayLabel(
+        String dateTime,
+        String fallbackDate
+    ) {
+        Date parsedDate = null;
+        if (!TextUtils.isEmpty(dateTime)) {
+            try {
+                parsedDate = INPUT_FORMAT.get().parse(dateTime);
+            } catch (ParseException ignored) {
+            }
+        }
+
+        if (parsedDate == null && !TextUtils.isEmpty(fallbackDate)) {
+            try {
+                parsedDate = FALLBACK_INPUT_FORMAT.get().parse(fallbackDate);
+            } catch (ParseException ignored) {
+            }
+        }
+
+        if (parsedDate == null) {
+            return fallbackDate != null ? fallbackDate : "";
+        }
+        return DAY_FORMAT.get().format(parsedDate);
+    }
+
+    private static String formatVisibility(int visibilityMeters, boolean isRussian) {
+        int visibilityKilometers = Math.max(0, visibilityMeters / 1000);
+        return visibilityKilometers + (isRussian ? " км" : " km");
+    }
+
+    private static String formatDescription(String rawDescription) {
+
+        if (rawDescription == null || rawDescription.isEmpty()) {
+            return "";
+        }
+        String firstLetter = rawDescription
+                .substring(0, 1)
+                .toUpperCase(Locale.getDefault());
+
+        String remaining = rawDescription.length() > 1
+                ? rawDescription.substring(1)
+                : "";
+
+        return firstLetter + remaining;
+    }
+
+    private static boolean isRussianLocale() {
+        return "ru".equalsIgnoreCase(Locale.getDefault().getLanguage());
+    }
+
+    /** Thrown when the payload was received completely but is not a usable forecast. */
+    public static final class FormatException extends IOException {
+        FormatException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private static final class Entry {
+        long timestamp;
+        String dateTime = "";
+        double temperature = Double.NaN;
+        Integer humidity;
+        Integer pressure;
+        boolean hasWind;
+        double windSpeed;
+        int visibility;
+        int conditionId;
+        String description = "";
+    }
+}
@@ -0,0 +1,162 @@
+package com.kegszool.weather;
+
+import android.os.Handler;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight layer for forecast loads: concurrent requests for the same
+ * endpoint join one in-flight fetch and every waiting listener receives
+ * its result on the delivery handler. When a caller joins with a higher
+ * priority, a queued fetch is moved to the higher lane and a running one
+ * has its thread priority raised until it finishes.
+ */
+final class ForecastRequestCoalescer {
+
+    private static final String TAG = "RequestCoalescer";
+
+    interface Listener {
+        void onResult(WeatherData.Result result);
+    }
+
+    private final WeatherDispatcher dispatcher;
+    private final Handler deliveryHandler;
+    private final Map<String, Flight> inFlight = new HashMap<>();
+
+    private int startedCount;
+    private int coalescedCount;
+
+    ForecastRequestCoalescer(WeatherDispatcher dispatcher, Handler deliveryHandler) {
+        this.dispatcher = dispatcher;
+        this.deliveryHandler = deliveryHandler;
+    }
+
+    synchronized void join(
+        String key,
+        WeatherDispatcher.Priority priority,
+        Listener listener,
+        Supplier<WeatherData.Result> loader
+    ) {
+        Flight flight = inFlight.get(key);
+        if (flight != null) {
+            flight.listeners.add(listener);
+            coalescedCount++;
+            if (!priority.isHigherThan(flight.priority)) {
+                return;
+            }
+            if (flight.started) {
+                promote(flight, priority);
+            } else {
+                flight.future.cancel(false);
+                schedule(key, flight, priority, loader);
+            }
+            return;
+        }
+        Flight newFlight = new Flight();
+        newFlight.listeners.add(listener);
+        inFlight.put(key, newFlight);
+        startedCount++;
+        schedule(key, newFlight, priority, loader);
+    }
+
+    synchronized void leave(String key, Listener listener) {
+        Flight flight = inFlight.get(key);
+        if (flight == null || !flight.listeners.remove(listener)) {
+            return;
+        }
+        if (flight.listeners.isEmpty()) {
+            inFlight.remove(key);
+            flight.future.cancel(true);
+        }
+    }
+
+    synchronized int getStartedCount() {
+        return startedCount;
+    }
+
+    synchronized int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    private void schedule(
+        String key,
+        Flight flight,
+        WeatherDispatcher.Priority priority,
+        Supplier<WeatherData.Result> loader
+    ) {
+        flight.priority = priority;
+        try {
+            flight.future = dispatcher.submit(priority, () -> {
+                synchronized (this) {
+                    if (flight.started || inFlight.get(key) != flight) {
+                        return;
+                    }
+                    flight.started = true;
+                    flight.threadId = Process.myTid();
+                }
+                WeatherData.Result result;
+                try {
+                    result = loader.get();
+                } finally {
+                    synchronized (this) {
+                        flight.threadId = 0;
+                        if (flight.priority != priority) {
+                            Process.setThreadPriority(priority.threadPriority());
+                        }
+                    }
+                }
+                complete(key, flight, result);
+            });
+        } catch (RejectedExecutionException e) {
+            complete(key, flight, WeatherData.Result.error("Too many pending requests"));
+        }
+    }
+
+    /** Raises the thread running {@code flight}; it is lowered again when the load ends. */
+    private void promote(Flight flight, WeatherDispatcher.Priority priority) {
+        flight.priority = priority;
+        if (flight.threadId == 0) {
+            return;
+        }
+        try {
+            Process.setThreadPriority(flight.threadId, priority.threadPriority());
+        } catch (IllegalArgumentException | SecurityException e) {
+            Log.w(TAG, "Unable to promote a running load", e);
+        }
+    }
+
+    private void complete(String key, Flight flight, WeatherData.Result result) {
+        List<Listener> listeners;
+        synchronized (this) {
+            if (inFlight.get(key) == flight) {
+                inFlight.remove(key);
+            }
+            listeners = new ArrayList<>(flight.listeners);
+            flight.listeners.clear();
+        }
+        if (listeners.isEmpty()) {
+            return;
+        }
+        deliveryHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onResult(result);
+            }
+        });
+    }
+
+    private static final class Flight {
+        final List<Listener> listeners = new ArrayList<>();
+        WeatherDispatcher.Priority priority;
+        Future<?> future;
+        boolean started;
+        int threadId;
+    }
+}
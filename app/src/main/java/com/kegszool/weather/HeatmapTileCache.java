@@ -0,0 +1,160 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Two-level cache of rendered heatmap tiles: encoded PNG bytes in a
+ * byte-bounded LRU, backed by a directory in the cache dir that is trimmed
+ * least recently used first. Disk entries start with their render time, so
+ * file times are free to track use. Tiles with nothing to draw are kept in
+ * memory only, with a {@code null} PNG. Callers decide freshness from
+ * {@link Entry#renderedAtMillis()}.
+ *
+ * <p>File reads and writes run outside the lock; it only guards the disk
+ * size bookkeeping and trimming. Writes go through a temporary file and a
+ * rename, so a concurrent reader sees either the old tile or the new one.
+ */
+final class HeatmapTileCache {
+
+    private static final String TAG = "HeatmapTileCache";
+    private static final String DIRECTORY = "heatmap_tiles";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_MEMORY_BYTES = 2 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 8L * 1024L * 1024L;
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    private static final long TEMP_FILE_GRACE_MS = 60_000L;
+
+    private final File directory;
+    private final LruCache<String, Entry> memory = new LruCache<>(MAX_MEMORY_BYTES) {
+        @Override
+        protected int sizeOf(String key, Entry entry) {
+            int pngBytes = entry.png() != null ? entry.png().length : 0;
+            return ENTRY_OVERHEAD_BYTES + 2 * key.length() + pngBytes;
+        }
+    };
+
+    private long diskBytes = -1L;
+
+    HeatmapTileCache(Context context) {
+        this.directory = new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    Entry get(String key) {
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        File file = new File(directory, key);
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (bytes.remaining() < Long.BYTES) {
+                return null;
+            }
+            long renderedAtMillis = bytes.getLong();
+            byte[] png = new byte[bytes.remaining()];
+            bytes.get(png);
+            entry = new Entry(png, renderedAtMillis);
+        } catch (IOException e) {
+            // Not on disk, or trimmed while being read.
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        memory.put(key, entry);
+        return entry;
+    }
+
+    /** Remembers that the tile has nothing to draw, without touching the disk. */
+    void putBlank(String key) {
+        memory.put(key, new Entry(null, System.currentTimeMillis()));
+    }
+
+    void put(String key, byte[] png) {
+        Entry entry = new Entry(png, System.currentTimeMillis());
+        memory.put(key, entry);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        File file = new File(directory, key);
+        long previousLength = file.isFile() ? file.length() : 0L;
+        File temp = null;
+        try {
+            temp = File.createTempFile(key, TEMP_SUFFIX, directory);
+            try (FileOutputStream stream = new FileOutputStream(temp)) {
+                stream.write(ByteBuffer.allocate(Long.BYTES).putLong(entry.renderedAtMillis()).array());
+                stream.write(png);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to rename " + temp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write tile " + key, e);
+            if (temp != null) {
+                temp.delete();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (diskBytes < 0L) {
+                diskBytes = directorySize();
+            } else {
+                diskBytes += Long.BYTES + png.length - previousLength;
+            }
+            if (diskBytes > MAX_DISK_BYTES) {
+                trimDisk();
+            }
+        }
+    }
+
+    private long directorySize() {
+        long total = 0L;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Recounts from the listing, since concurrent writers only estimate
+     * their delta. Temporary files still being written are left alone.
+     */
+    private void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        diskBytes = 0L;
+        for (File file : files) {
+            diskBytes += file.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long target = MAX_DISK_BYTES * 3 / 4;
+        long writingSince = System.currentTimeMillis() - TEMP_FILE_GRACE_MS;
+        for (File file : files) {
+            if (diskBytes <= target) {
+                break;
+            }
+            if (file.getName().endsWith(TEMP_SUFFIX) && file.lastModified() > writingSince) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+    record Entry(byte[] png, long renderedAtMillis) {}
+}
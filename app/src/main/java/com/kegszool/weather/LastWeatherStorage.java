@@ -3,56 +3,134 @@ package com.kegszool.weather;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.text.TextUtils;
+import android.util.AtomicFile;
+import android.util.Log;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Small snapshot of the last forecast for the widget and the first frame.
+ * Stored as a checksummed binary file that is read through a memory-mapped
+ * buffer; the latest snapshot is also kept in memory, so repeated reads
+ * in one process do not touch the disk. A snapshot left in shared
+ * preferences by older versions is moved into the file on first read.
+ */
 public final class LastWeatherStorage {
 
+    private static final String TAG = "LastWeatherStorage";
+
     private static final String PREF_NAME = "last_weather_storage";
-    private static final String KEY_CITY = "city";
-    private static final String KEY_TEMPERATURE = "temperature";
-    private static final String KEY_CONDITION_ID = "conditionId";
-    private static final String KEY_FORECASTS = "forecasts";
+    private static final String KEY_LOCATION_CITY = "locationCity";
+    private static final String KEY_LOCATION_LATITUDE = "locationLatitude";
+    private static final String KEY_LOCATION_LONGITUDE = "locationLongitude";
+
+    private static final String LEGACY_KEY_CITY = "city";
+    private static final String LEGACY_KEY_TEMPERATURE = "temperature";
+    private static final String LEGACY_KEY_CONDITION_ID = "conditionId";
+    private static final String LEGACY_KEY_FORECASTS = "forecasts";
+    private static final String LEGACY_KEY_SAVED_AT = "savedAt";
+
+    private static final String SNAPSHOT_FILE_NAME = "last_weather.snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x57534e50;
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 4;
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024;
+    private static final int MAX_FORECASTS = 4;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor();
 
+    private static volatile WeatherSnapshot cachedSnapshot;
 
-    public static void save(Context context, WeatherData data) {
+    public static void save(Context context, WeatherData data, long savedAtMillis) {
         if (context == null || data == null) {
             return;
         }
+        WeatherSnapshot snapshot = toSnapshot(data, savedAtMillis);
+        cachedSnapshot = snapshot;
+
+        File file = getSnapshotFile(context);
+        WRITER.execute(() -> writeSnapshot(file, snapshot));
+    }
+
+    public static WeatherSnapshot read(Context context) {
+        WeatherSnapshot snapshot = cachedSnapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (context == null) {
+            return WeatherSnapshot.empty();
+        }
+        File file = getSnapshotFile(context);
+        snapshot = readSnapshot(file);
+        if (snapshot == null) {
+            snapshot = migrateLegacySnapshot(context, file);
+        }
+        if (snapshot == null) {
+            return WeatherSnapshot.empty();
+        }
+        cachedSnapshot = snapshot;
+        return snapshot;
+    }
+
+    public static void saveLocation(Context context, WeatherLocation location) {
+        if (context == null || location == null || !location.isValid()) {
+            return;
+        }
         SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
         prefs.edit()
-                .putString(KEY_CITY, data.location())
-                .putString(KEY_TEMPERATURE, data.temperature())
-                .putInt(KEY_CONDITION_ID, data.conditionId())
-                .putString(KEY_FORECASTS, serializeForecasts(data))
+                .putString(KEY_LOCATION_CITY, location.isCity() ? location.city() : "")
+                .putLong(KEY_LOCATION_LATITUDE, Double.doubleToRawLongBits(location.latitude()))
+                .putLong(KEY_LOCATION_LONGITUDE, Double.doubleToRawLongBits(location.longitude()))
                 .apply();
     }
 
-    public static WeatherSnapshot read(Context context) {
+    public static WeatherLocation readLocation(Context context) {
         if (context == null) {
-            return WeatherSnapshot.empty();
+            return null;
         }
         SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        String city = prefs.getString(KEY_CITY, "");
-        String temperature = prefs.getString(KEY_TEMPERATURE, "");
-        int conditionId = prefs.getInt(KEY_CONDITION_ID, 0);
-        String forecastsRaw = prefs.getString(KEY_FORECASTS, "");
-        return new WeatherSnapshot(city, temperature, conditionId, parseForecasts(forecastsRaw));
+        if (!prefs.contains(KEY_LOCATION_LATITUDE)) {
+            return null;
+        }
+        String city = prefs.getString(KEY_LOCATION_CITY, "");
+        if (!TextUtils.isEmpty(city)) {
+            return WeatherLocation.ofCity(city);
+        }
+        WeatherLocation location = WeatherLocation.ofCoordinates(
+                Double.longBitsToDouble(prefs.getLong(KEY_LOCATION_LATITUDE, 0L)),
+                Double.longBitsToDouble(prefs.getLong(KEY_LOCATION_LONGITUDE, 0L)));
+        return location.isValid() ? location : null;
     }
 
     public record WeatherSnapshot(
         String city,
         String temperature,
         int conditionId,
-       	ForecastSnapshot[] forecasts
+       	ForecastSnapshot[] forecasts,
+        long savedAtMillis
     ) {
         public WeatherSnapshot(
             String city,
             String temperature,
             int conditionId,
-            ForecastSnapshot[] forecasts
+            ForecastSnapshot[] forecasts,
+            long savedAtMillis
         ) {
             this.city = city != null
                     ? city
@@ -64,11 +142,16 @@ public final class LastWeatherStorage {
                     ? forecasts
                     : new ForecastSnapshot[0];
             this.conditionId = conditionId;
+            this.savedAtMillis = savedAtMillis;
         }
 
         public static WeatherSnapshot empty() {
             return new WeatherSnapshot(
-                    "", "", 0, new ForecastSnapshot[0]);
+                    "", "", 0, new ForecastSnapshot[0], 0L);
+        }
+
+        public boolean isEmpty() {
+            return savedAtMillis <= 0L && TextUtils.isEmpty(city);
         }
     }
 
@@ -92,52 +175,191 @@ public final class LastWeatherStorage {
         }
     }
 
-    private static String serializeForecasts(WeatherData data) {
-        if (data == null || data.dailyForecasts() == null) {
-            return "";
-        }
-        JSONArray array = new JSONArray();
-        final int max = Math.min(4, data.dailyForecasts().size());
-        for (int i = 0; i < max; i++) {
-
+    static WeatherSnapshot toSnapshot(WeatherData data, long savedAtMillis) {
+        int count = Math.min(MAX_FORECASTS, data.dailyForecasts().size());
+        ForecastSnapshot[] forecasts = new ForecastSnapshot[count];
+        for (int i = 0; i < count; i++) {
             WeatherData.DailyForecast forecast = data.dailyForecasts().get(i);
-            if (forecast == null) { continue; }
-
-            JSONObject obj = new JSONObject();
-            try {
-                obj.put("day", forecast.dayLabel());
-                obj.put("temp", forecast.temperature());
-                obj.put("cond", forecast.conditionId());
-                array.put(obj);
-            } catch (JSONException ignored) {}
+            forecasts[i] = new ForecastSnapshot(
+                    forecast.dayLabel(),
+                    forecast.temperature(),
+                    forecast.conditionId()
+            );
         }
-        return array.toString();
+        return new WeatherSnapshot(
+                data.location(),
+                data.temperature(),
+                data.conditionId(),
+                forecasts,
+                savedAtMillis
+        );
     }
 
-    private static ForecastSnapshot[] parseForecasts(String raw) {
+    /**
+     * Returns the snapshot older versions kept in shared preferences, or
+     * null if there is none. It is written to the snapshot file on the
+     * writer thread, behind any pending save, and the old keys are dropped
+     * once the file exists.
+     */
+    private static WeatherSnapshot migrateLegacySnapshot(Context context, File target) {
+        SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        if (!prefs.contains(LEGACY_KEY_CITY) && !prefs.contains(LEGACY_KEY_SAVED_AT)) {
+            return null;
+        }
+        WeatherSnapshot snapshot = new WeatherSnapshot(
+                prefs.getString(LEGACY_KEY_CITY, ""),
+                prefs.getString(LEGACY_KEY_TEMPERATURE, ""),
+                prefs.getInt(LEGACY_KEY_CONDITION_ID, 0),
+                parseLegacyForecasts(prefs.getString(LEGACY_KEY_FORECASTS, "")),
+                prefs.getLong(LEGACY_KEY_SAVED_AT, 0L));
+        WRITER.execute(() -> {
+            if (!target.exists() && !writeSnapshot(target, snapshot)) {
+                return;
+            }
+            prefs.edit()
+                    .remove(LEGACY_KEY_CITY)
+                    .remove(LEGACY_KEY_TEMPERATURE)
+                    .remove(LEGACY_KEY_CONDITION_ID)
+                    .remove(LEGACY_KEY_FORECASTS)
+                    .remove(LEGACY_KEY_SAVED_AT)
+                    .apply();
+        });
+        return snapshot;
+    }
 
+    private static ForecastSnapshot[] parseLegacyForecasts(String raw) {
         if (TextUtils.isEmpty(raw)) {
             return new ForecastSnapshot[0];
         }
         try {
-
             JSONArray array = new JSONArray(raw);
-            int count = Math.min(4, array.length());
-            ForecastSnapshot[] snapshots = new ForecastSnapshot[count];
-
+            int count = Math.min(MAX_FORECASTS, array.length());
+            ForecastSnapshot[] forecasts = new ForecastSnapshot[count];
             for (int i = 0; i < count; i++) {
-                JSONObject obj = array.optJSONObject(i);
-                if (obj == null) {
-                    snapshots[i] = new ForecastSnapshot(
-                            "", "", 0);
-                    continue;
-                }
-                String day = obj.optString("day", "");
-                String temp = obj.optString("temp", "");
-                int cond = obj.optInt("cond", 0);
-                snapshots[i] = new ForecastSnapshot(day, temp, cond);
+                JSONObject forecast = array.optJSONObject(i);
+                forecasts[i] = forecast != null
+                        ? new ForecastSnapshot(
+                                forecast.optString("day", ""),
+                                forecast.optString("temp", ""),
+                                forecast.optInt("cond", 0))
+                        : new ForecastSnapshot("", "", 0);
+            }
+            return forecasts;
+        } catch (JSONException e) {
+            Log.w(TAG, "Dropping unreadable legacy forecasts", e);
+            return new ForecastSnapshot[0];
+        }
+    }
+
+    private static boolean writeSnapshot(File target, WeatherSnapshot snapshot) {
+
+        AtomicFile file = new AtomicFile(target);
+        FileOutputStream stream = null;
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(256);
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            payload.writeLong(snapshot.savedAtMillis());
+            payload.writeInt(snapshot.conditionId());
+            writeString(payload, snapshot.city());
+            writeString(payload, snapshot.temperature());
+            payload.writeByte(snapshot.forecasts().length);
+            for (ForecastSnapshot forecast : snapshot.forecasts()) {
+                writeString(payload, forecast.dayLabel());
+                writeString(payload, forecast.temperature());
+                payload.writeInt(forecast.conditionId());
+            }
+            payload.flush();
+
+            byte[] body = payloadBytes.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, body.length);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(SNAPSHOT_MAGIC)
+                    .put(SNAPSHOT_VERSION)
+                    .putInt(body.length)
+                    .putInt((int) crc.getValue());
+
+            stream = file.startWrite();
+            stream.write(header.array());
+            stream.write(body);
+            file.finishWrite(stream);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save weather snapshot", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+            return false;
+        }
+    }
+
+    private static WeatherSnapshot readSnapshot(File target) {
+
+        AtomicFile file = new AtomicFile(target);
+        try (FileInputStream stream = file.openRead();
+             FileChannel channel = stream.getChannel()
+        ) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > HEADER_SIZE + MAX_PAYLOAD_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.get() != SNAPSHOT_VERSION) {
+                return null;
             }
-            return snapshots;
-        } catch (JSONException e) { return new ForecastSnapshot[0]; }
+            int payloadLength = buffer.getInt();
+            int expectedCrc = buffer.getInt();
+            if (payloadLength != buffer.remaining()) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if ((int) crc.getValue() != expectedCrc) {
+                Log.w(TAG, "Discarding corrupted weather snapshot");
+                return null;
+            }
+
+            byte[] scratch = new byte[256];
+            long savedAtMillis = buffer.getLong();
+            int conditionId = buffer.getInt();
+            String city = readString(buffer, scratch);
+            String temperature = readString(buffer, scratch);
+            int count = Math.min(MAX_FORECASTS, buffer.get());
+            ForecastSnapshot[] forecasts = new ForecastSnapshot[Math.max(0, count)];
+            for (int i = 0; i < forecasts.length; i++) {
+                String dayLabel = readString(buffer, scratch);
+                String forecastTemperature = readString(buffer, scratch);
+                forecasts[i] = new ForecastSnapshot(dayLabel, forecastTemperature, buffer.getInt());
+            }
+            return new WeatherSnapshot(city, temperature, conditionId, forecasts, savedAtMillis);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to read weather snapshot", e);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        out.writeShort(length);
+        out.write(bytes, 0, length);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == 0) {
+            return "";
+        }
+        byte[] target = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(target, 0, length);
+        return new String(target, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static File getSnapshotFile(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), SNAPSHOT_FILE_NAME);
     }
 }
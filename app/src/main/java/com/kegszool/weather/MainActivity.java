@@ -1,6 +1,5 @@
 package com.kegszool.weather;
 
-import android.Manifest;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
@@ -9,16 +8,19 @@ import android.graphics.drawable.Drawable;
 import android.location.Location;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewParent;
 import android.view.inputmethod.EditorInfo;
-import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -26,7 +28,6 @@ import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.DrawableRes;
-import androidx.annotation.RequiresPermission;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.core.graphics.Insets;
@@ -36,19 +37,21 @@ import androidx.core.view.WindowInsetsCompat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements WeatherService.Callback {
 
-    private static final Map<String, String> POPULAR_CITIES = PopularCities.getCities();
-
     private static final String TAG = "MainActivity";
     private static final String DEFAULT_CITY = "Moscow";
     private static final String NOT_FOUND_MSG_FALLBACK = "city not found";
-    private static final String CITY_SUGGESTION_SEPARATOR = " / ";
 
     private static final long VIBRATION_DURATION_MS = 15L;
     private static final int REQUEST_CODE_MAP_PICK = 1001;
+    private static final long SUGGESTION_DEBOUNCE_MS = 120L;
+    private static final int MAX_CITY_SUGGESTIONS = 20;
+
+    private static final ExecutorService SUGGESTION_EXECUTOR = Executors.newSingleThreadExecutor();
 
     private GpsTracker gpsTracker;
     private ConstraintLayout rootLayout;
@@ -61,19 +64,28 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
     private TextView mainTempView;
     private TextView windSpeedView;
     private TextView visibilityView;
+    private TextView dataAgeView;
 
     private AutoCompleteTextView searchView;
     private ForecastViewHolder[] forecastHolders;
-    private ArrayAdapter<String> citySuggestionsAdapter;
+    private CitySuggestionAdapter citySuggestionsAdapter;
+    private final Handler suggestionHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingSuggestionQuery;
+    private volatile int suggestionGeneration;
 
     private String apiKey;
     private String lastSearchedCity = DEFAULT_CITY;
+    private WeatherLocation requestedLocation;
     private int currentBackgroundResId = 0;
+    private long createdAtMillis;
+    private boolean hasRenderedContent;
+    private boolean hasRenderedFreshContent;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
 
         super.onCreate(savedInstanceState);
+        createdAtMillis = SystemClock.elapsedRealtime();
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_main);
 
@@ -89,12 +101,16 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
                 return WindowInsetsCompat.CONSUMED;
             });
         }
+        WeatherHttpCache.install(this);
         apiKey = BuildConfig.OPEN_WEATHER_API_KEY;
         weatherRouter = new WeatherRouter(apiKey, this);
+        weatherRouter.setPersistentCache(WeatherDatabase.getInstance(this));
 
         bindViews();
+        renderLastSnapshot();
         setupSearch();
         fetchWeatherForCurrentLocation();
+        WeatherSyncWorker.schedule(this);
     }
 
     @Override
@@ -106,8 +122,18 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
         }
     }
 
+    @Override
+    protected void onStop() {
+        WeatherHttpCache.flush();
+        super.onStop();
+    }
+
     @Override
     protected void onDestroy() {
+        if (pendingSuggestionQuery != null) {
+            suggestionHandler.removeCallbacks(pendingSuggestionQuery);
+        }
+        suggestionGeneration++;
         if (weatherRouter != null) {
             weatherRouter.cancel();
         }
@@ -118,29 +144,31 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
     }
 
     @Override
-    @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
     public void onWeatherLoaded(WeatherData data) {
 
         if (data == null) {
             onError("No weather data");
             return;
         }
-        if (!TextUtils.isEmpty(data.location())) {
-            locationView.setText(data.location());
-        }
-        descriptionView.setText(data.description());
-        humidityView.setText(data.humidity());
-        pressureView.setText(data.pressure());
-        mainTempView.setText(data.temperature());
-        windSpeedView.setText(data.windSpeed());
-        visibilityView.setText(data.visibility());
+        renderWeather(data);
+        dataAgeView.setVisibility(View.GONE);
+        onContentRendered(true);
 
-        renderDailyForecasts(data.dailyForecasts());
-        updateBackground(data);
+        WeatherPublisher.publish(this, data);
+        LastWeatherStorage.saveLocation(this, requestedLocation);
+    }
 
-        WeatherNotificationManager.showWeatherNotification(this, data);
-        LastWeatherStorage.save(this, data);
-        WeatherWidgetProvider.requestUpdate(this);
+    @Override
+    public void onCachedWeatherLoaded(WeatherData data, long savedAtMillis, boolean isFresh) {
+
+        if (data == null) {
+            return;
+        }
+        renderWeather(data);
+        showDataAge(savedAtMillis);
+        onContentRendered(false);
+
+        LastWeatherStorage.saveLocation(this, requestedLocation);
     }
 
     @Override
@@ -170,6 +198,7 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
         pressureView = findViewById(R.id.pressure);
         windSpeedView = findViewById(R.id.windSpeed);
         visibilityView = findViewById(R.id.visibility);
+        dataAgeView = findViewById(R.id.dataAge);
 
         TextView day1Label = findViewById(R.id.day1);
         ImageView day1Icon = findViewById(R.id.day1img);
@@ -218,6 +247,93 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
         searchView.clearFocus();
     }
 
+    private void renderWeather(WeatherData data) {
+        if (!TextUtils.isEmpty(data.location())) {
+            setTextIfChanged(locationView, data.location());
+        }
+        setTextIfChanged(descriptionView, data.description());
+        setTextIfChanged(humidityView, data.humidity());
+        setTextIfChanged(pressureView, data.pressure());
+        setTextIfChanged(mainTempView, data.temperature());
+        setTextIfChanged(windSpeedView, data.windSpeed());
+        setTextIfChanged(visibilityView, data.visibility());
+
+        renderDailyForecasts(data.dailyForecasts());
+        updateBackground(data.conditionId());
+    }
+
+    private void renderLastSnapshot() {
+
+        WeatherDataStore.StoredWeather stored = WeatherDataStore.readFirstFrame(this);
+        if (stored != null) {
+            renderWeather(stored.data());
+            showDataAge(stored.savedAtMillis());
+            onContentRendered(false);
+            return;
+        }
+
+        LastWeatherStorage.WeatherSnapshot snapshot = LastWeatherStorage.read(this);
+        if (snapshot.isEmpty()) {
+            return;
+        }
+        if (!TextUtils.isEmpty(snapshot.city())) {
+            setTextIfChanged(locationView, snapshot.city());
+        }
+        setTextIfChanged(mainTempView, snapshot.temperature());
+
+        List<WeatherData.DailyForecast> forecasts = new ArrayList<>();
+        for (LastWeatherStorage.ForecastSnapshot forecast : snapshot.forecasts()) {
+            forecasts.add(new WeatherData.DailyForecast(
+                    forecast.dayLabel(),
+                    forecast.temperature(),
+                    forecast.conditionId(),
+                    null
+            ));
+        }
+        renderDailyForecasts(forecasts);
+        updateBackground(snapshot.conditionId());
+        showDataAge(snapshot.savedAtMillis());
+        onContentRendered(false);
+    }
+
+    private void showDataAge(long savedAtMillis) {
+        if (savedAtMillis <= 0L) {
+            dataAgeView.setVisibility(View.GONE);
+            return;
+        }
+        CharSequence age = DateUtils.getRelativeTimeSpanString(
+                savedAtMillis,
+                System.currentTimeMillis(),
+                DateUtils.MINUTE_IN_MILLIS
+        );
+        dataAgeView.setText(getString(R.string.data_age_label, age));
+        dataAgeView.setVisibility(View.VISIBLE);
+    }
+
+    private void onContentRendered(boolean isFresh) {
+        long elapsedMillis = SystemClock.elapsedRealtime() - createdAtMillis;
+        if (!hasRenderedContent) {
+            hasRenderedContent = true;
+            Log.i(TAG, "First meaningful content in " + elapsedMillis
+                    + " ms (" + (isFresh ? "network" : "stored snapshot") + ")");
+        }
+        if (isFresh && !hasRenderedFreshContent) {
+            hasRenderedFreshContent = true;
+            Log.i(TAG, "First fresh content in " + elapsedMillis + " ms");
+            reportFullyDrawn();
+        }
+    }
+
+    private void setTextIfChanged(TextView view, CharSequence text) {
+        if (view == null) {
+            return;
+        }
+        CharSequence value = text != null ? text : "";
+        if (!TextUtils.equals(view.getText(), value)) {
+            view.setText(value);
+        }
+    }
+
     private void setupSearch() {
         setupCitySuggestions();
         searchView.setOnEditorActionListener((textView, actionId, keyEvent) -> {
@@ -239,6 +355,7 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
             ).show();
             vibrate();
             if (!TextUtils.isEmpty(lastSearchedCity)) {
+                requestedLocation = WeatherLocation.ofCity(lastSearchedCity);
                 weatherRouter.requestWeatherByCity(lastSearchedCity);
             }
             return;
@@ -246,17 +363,13 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
         String normalizedCity = normalizeCityInput(inputCity);
         lastSearchedCity = normalizedCity;
         searchView.dismissDropDown();
+        requestedLocation = WeatherLocation.ofCity(normalizedCity);
         weatherRouter.requestWeatherByCity(normalizedCity);
     }
 
     private void setupCitySuggestions() {
 
-        citySuggestionsAdapter = new ArrayAdapter<>(
-            this,
-            R.layout.item_city_suggestion,
-        	R.id.citySuggestionText,
-            new ArrayList<>()
-        );
+        citySuggestionsAdapter = new CitySuggestionAdapter(this);
 
         searchView.setAdapter(citySuggestionsAdapter);
         searchView.setDropDownBackgroundResource(R.drawable.autocomplete_dropdown_bg);
@@ -304,35 +417,61 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
 
             @Override
             public void afterTextChanged(Editable s) {
-                filterCitySuggestions(s != null ? s.toString() : "");
+                scheduleSuggestionQuery(s != null ? s.toString() : "");
             }
         });
-        filterCitySuggestions("");
+        scheduleSuggestionQuery("");
     }
 
-    private void filterCitySuggestions(String query) {
-
-        if (citySuggestionsAdapter == null) {
-            return;
+    private void scheduleSuggestionQuery(String query) {
+        if (pendingSuggestionQuery != null) {
+            suggestionHandler.removeCallbacks(pendingSuggestionQuery);
         }
+        int generation = ++suggestionGeneration;
+        pendingSuggestionQuery = () -> SUGGESTION_EXECUTOR.execute(() -> {
+            if (generation != suggestionGeneration) {
+                return;
+            }
+            List<String> results = querySuggestions(query);
+            suggestionHandler.post(() -> showCitySuggestions(generation, query, results));
+        });
+        suggestionHandler.postDelayed(
+                pendingSuggestionQuery,
+                TextUtils.isEmpty(query) ? 0L : SUGGESTION_DEBOUNCE_MS);
+    }
 
-        String normalizedQuery = query != null
-                ? query.trim().toLowerCase(Locale.ROOT)
-                : "";
-
-        citySuggestionsAdapter.clear();
-
-        for (Map.Entry<String, String> entry : POPULAR_CITIES.entrySet()) {
-            String englishName = entry.getKey();
-            String russianName = entry.getValue();
-            if (TextUtils.isEmpty(normalizedQuery) ||
-                    startsWithLocalized(englishName, normalizedQuery) ||
-                    startsWithLocalized(russianName, normalizedQuery)
-            ) {
-                citySuggestionsAdapter.add(buildSuggestionLabel(englishName, russianName));
+    private List<String> querySuggestions(String query) {
+        CitySuggestionIndex index = CitySuggestionIndex.getInstance();
+        if (TextUtils.isEmpty(query.trim())) {
+            return index.query(query);
+        }
+        CityDatabase cities = CityDatabase.getInstance(this);
+        List<String> labels = new ArrayList<>();
+        if (cities.isPackaged()) {
+            for (CityDatabase.City city : cities.search(query, MAX_CITY_SUGGESTIONS)) {
+                labels.add(city.label());
+            }
+            return labels;
+        }
+        List<String> prefixMatches = index.query(query);
+        if (!prefixMatches.isEmpty()) {
+            return prefixMatches;
+        }
+        // No prefix match among the popular cities: offer the closest spellings.
+        for (CityDatabase.City city : cities.search(query, MAX_CITY_SUGGESTIONS)) {
+            String label = index.labelFor(city.name());
+            if (label != null) {
+                labels.add(label);
             }
         }
-        citySuggestionsAdapter.notifyDataSetChanged();
+        return labels;
+    }
+
+    private void showCitySuggestions(int generation, String query, List<String> results) {
+        if (generation != suggestionGeneration || citySuggestionsAdapter == null) {
+            return;
+        }
+        citySuggestionsAdapter.submitList(results);
         if (!TextUtils.isEmpty(query) &&
                 citySuggestionsAdapter.getCount() > 0 &&
                 searchView.hasFocus()
@@ -345,18 +484,14 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
         if (TextUtils.isEmpty(cityInput)) {
             return cityInput;
         }
+        CitySuggestionIndex index = CitySuggestionIndex.getInstance();
         String englishFromLabel = extractEnglishCityName(cityInput);
-        if (!TextUtils.isEmpty(englishFromLabel)
-                && POPULAR_CITIES.containsKey(englishFromLabel)
-        ) {
-            return englishFromLabel;
+        String knownName = index.findEnglishName(englishFromLabel);
+        if (knownName == null) {
+            knownName = index.findEnglishName(cityInput);
         }
-        for (Map.Entry<String, String> entry : POPULAR_CITIES.entrySet()) {
-            if (cityInput.equalsIgnoreCase(entry.getKey()) ||
-                    cityInput.equalsIgnoreCase(entry.getValue())
-            ) {
-                return entry.getKey();
-            }
+        if (knownName != null) {
+            return knownName;
         }
         return !TextUtils.isEmpty(englishFromLabel) ? englishFromLabel : cityInput;
     }
@@ -365,25 +500,13 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
         if (TextUtils.isEmpty(suggestion)) {
             return suggestion;
         }
-        int separatorIndex = suggestion.indexOf(CITY_SUGGESTION_SEPARATOR);
+        int separatorIndex = suggestion.indexOf(CitySuggestionIndex.LABEL_SEPARATOR);
         if (separatorIndex > 0) {
             return suggestion.substring(0, separatorIndex).trim();
         }
         return suggestion.trim();
     }
 
-    private String buildSuggestionLabel(String englishName, String russianName) {
-        return englishName + CITY_SUGGESTION_SEPARATOR + russianName;
-    }
-
-    private boolean startsWithLocalized(String value, String prefix) {
-        if (TextUtils.isEmpty(value) || TextUtils.isEmpty(prefix)) {
-            return false;
-        }
-        return value.toLowerCase(Locale.ROOT).startsWith(
-                prefix.toLowerCase(Locale.ROOT));
-    }
-
     private void setupMetricTooltips() {
         View.OnClickListener tooltipListener = view -> {
             int messageResId = getTooltipMessageResId(view.getId());
@@ -448,7 +571,8 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
                         : String.format(Locale.getDefault(), "%.4f, %.4f", lat, lng);
                 locationView.setText(displayLabel);
                 lastSearchedCity = displayLabel;
-                weatherRouter.requestWeatherByCoordinates(lat, lng);
+                requestedLocation = WeatherLocation.ofCoordinates(lat, lng);
+                weatherRouter.requestWeatherByCoordinates(lat, lng, CoordinateGrid.FINE);
             }
         }
     }
@@ -468,17 +592,18 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
                     longitude = lastKnownLocation.getLongitude();
                 }
             }
+            requestedLocation = WeatherLocation.ofCoordinates(latitude, longitude);
             weatherRouter.requestWeatherByCoordinates(latitude, longitude);
         } else {
             gpsTracker.showSettingsAlert();
         }
     }
 
-    private void updateBackground(WeatherData data) {
+    private void updateBackground(int conditionId) {
         if (rootLayout == null) {
             return;
         }
-        int resolvedResId = resolveBackgroundResource(data.conditionId());
+        int resolvedResId = resolveBackgroundResource(conditionId);
         if (resolvedResId == 0 || resolvedResId == currentBackgroundResId) {
             return;
         }
@@ -538,8 +663,8 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
                 if (holder.root() != null) {
                     holder.root().setVisibility(View.VISIBLE);
                 }
-                holder.dayLabel().setText(forecast.dayLabel());
-                holder.temperatureView().setText(forecast.temperature());
+                setTextIfChanged(holder.dayLabel(), forecast.dayLabel());
+                setTextIfChanged(holder.temperatureView(), forecast.temperature());
 
                 String contentDescription = forecast.description();
                 if (TextUtils.isEmpty(contentDescription)) {
@@ -548,7 +673,11 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
                 holder.iconView().setContentDescription(contentDescription);
 
                 int iconRes = resolveForecastIcon(forecast.conditionId());
-                holder.iconView().setImageResource(iconRes);
+                Object currentIcon = holder.iconView().getTag();
+                if (!(currentIcon instanceof Integer) || (Integer) currentIcon != iconRes) {
+                    holder.iconView().setImageResource(iconRes);
+                    holder.iconView().setTag(iconRes);
+                }
 
             } else {
                 if (holder.root() != null) {
@@ -557,6 +686,7 @@ public class MainActivity extends AppCompatActivity implements WeatherService.Ca
                 holder.dayLabel().setText("");
                 holder.temperatureView().setText("");
                 holder.iconView().setImageDrawable(null);
+                holder.iconView().setTag(null);
                 holder.iconView().setContentDescription(null);
             }
         }
@@ -2,6 +2,10 @@ package com.kegszool.weather;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.Button;
@@ -15,27 +19,55 @@ import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.OnMapReadyCallback;
 import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.CameraPosition;
 import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.TileOverlay;
+import com.google.android.gms.maps.model.TileOverlayOptions;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MapPickerActivity extends FragmentActivity
-        implements OnMapReadyCallback, GoogleMap.OnMapClickListener
+        implements OnMapReadyCallback,
+        GoogleMap.OnMapClickListener,
+        GoogleMap.OnCameraIdleListener,
+        WeatherPreviewLoader.Listener
 {
 
     public static final String EXTRA_LATITUDE = "extra_latitude";
     public static final String EXTRA_LONGITUDE = "extra_longitude";
     public static final String EXTRA_LABEL = "extra_label";
 
+    private static final double MAX_LABEL_DISTANCE_KM = 50.0;
+    private static final ExecutorService GEOCODER_EXECUTOR = Executors.newSingleThreadExecutor();
+    private static final String TAG = "MapPickerActivity";
+    private static final int HEATMAP_SAMPLES_PER_SIDE = 3;
+    private static final int HEATMAP_CONCURRENCY = 2;
+    private static final float HEATMAP_MIN_ZOOM = 4f;
+    private static final double KM_PER_DEGREE = 111.32;
+
     private GoogleMap googleMap;
     private Marker currentMarker;
     private TextView selectionInfo;
+    private TextView weatherPreview;
+    private WeatherPreviewLoader previewLoader;
+    private WeatherRouter heatmapRouter;
+    private WeatherBatch heatmapBatch;
+    private boolean hasUnrenderedSamples;
+    private TileOverlay heatmapOverlay;
+    private double previewLat = Double.NaN;
+    private double previewLng = Double.NaN;
     private View overlayContainer;
     private double selectedLat = Double.NaN;
     private double selectedLng = Double.NaN;
     private String selectedLabel = "";
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -43,6 +75,10 @@ public class MapPickerActivity extends FragmentActivity
         setContentView(R.layout.activity_map_picker);
 
         selectionInfo = findViewById(R.id.selectionInfo);
+        weatherPreview = findViewById(R.id.mapWeatherPreview);
+        previewLoader = new WeatherPreviewLoader(
+                new WeatherRouter(BuildConfig.OPEN_WEATHER_API_KEY, null), this);
+        heatmapRouter = new WeatherRouter(BuildConfig.OPEN_WEATHER_API_KEY, null);
         overlayContainer = findViewById(R.id.mapOverlayContainer);
         Button confirmButton = findViewById(R.id.confirmSelection);
 
@@ -54,6 +90,7 @@ public class MapPickerActivity extends FragmentActivity
             Toast.makeText(this, R.string.map_no_selection, Toast.LENGTH_SHORT).show();
         }
         confirmButton.setOnClickListener(v -> returnSelection());
+        preloadNearestCityIndex();
     }
 
     @Override
@@ -61,9 +98,141 @@ public class MapPickerActivity extends FragmentActivity
         googleMap = map;
         googleMap.getUiSettings().setZoomControlsEnabled(true);
         googleMap.setOnMapClickListener(this);
+        googleMap.setOnCameraIdleListener(this);
+        heatmapOverlay = googleMap.addTileOverlay(new TileOverlayOptions()
+                .tileProvider(new TemperatureTileProvider(this))
+                .fadeIn(true));
         applyMapPaddingWhenReady();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (previewLoader != null) {
+            previewLoader.cancel();
+        }
+        if (heatmapBatch != null) {
+            heatmapBatch.cancel();
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public void onCameraIdle() {
+        if (googleMap == null) {
+            return;
+        }
+        CameraPosition position = googleMap.getCameraPosition();
+        previewLat = position.target.latitude;
+        previewLng = position.target.longitude;
+        previewLoader.request(previewLat, previewLng, position.zoom);
+        sampleHeatmap(googleMap.getProjection().getVisibleRegion().latLngBounds, position.zoom);
+    }
+
+    /**
+     * Fetches current temperatures on a small grid across the visible region
+     * so the heatmap has samples to interpolate. Cells with a fresh sample
+     * are skipped and the previous camera's batch is dropped. Tiles are
+     * redrawn once per batch rather than once per sample.
+     */
+    private void sampleHeatmap(LatLngBounds bounds, float zoom) {
+        if (heatmapBatch != null) {
+            heatmapBatch.cancel();
+            heatmapBatch = null;
+        }
+        redrawHeatmapIfNeeded();
+        if (bounds == null || zoom < HEATMAP_MIN_ZOOM) {
+            return;
+        }
+        CoordinateGrid grid = WeatherPreviewLoader.gridFor(zoom);
+        TemperatureSamples samples = TemperatureSamples.getInstance();
+
+        double south = bounds.southwest.latitude;
+        double north = bounds.northeast.latitude;
+        double west = bounds.southwest.longitude;
+        double east = bounds.northeast.longitude;
+        if (east < west) {
+            east += 360.0;
+        }
+        double latitudeStep = (north - south) / HEATMAP_SAMPLES_PER_SIDE;
+        double longitudeStep = (east - west) / HEATMAP_SAMPLES_PER_SIDE;
+        double radiusKm = 1.5 * KM_PER_DEGREE * Math.max(
+                latitudeStep,
+                longitudeStep * Math.cos(Math.toRadians((north + south) / 2)));
+
+        List<WeatherLocation> locations = new ArrayList<>();
+        for (int row = 0; row < HEATMAP_SAMPLES_PER_SIDE; row++) {
+            for (int column = 0; column < HEATMAP_SAMPLES_PER_SIDE; column++) {
+                CoordinateGrid.Cell cell = grid.snap(
+                        south + (row + 0.5) * latitudeStep,
+                        west + (column + 0.5) * longitudeStep);
+                WeatherLocation location = WeatherLocation.ofCoordinates(
+                        cell.centerLatitude(), cell.centerLongitude());
+                if (!samples.isFresh(WeatherRouter.cacheKeyFor(location, grid))) {
+                    locations.add(location);
+                }
+            }
+        }
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        heatmapRouter.setCoordinateGrid(grid);
+        heatmapBatch = heatmapRouter.requestWeatherBatch(
+                locations, HEATMAP_CONCURRENCY, WeatherDispatcher.Priority.PREFETCH,
+                new WeatherBatch.Callback() {
+            @Override
+            public void onItemLoaded(WeatherLocation location, WeatherData data, long elapsedMillis) {
+                boolean isStored = samples.put(
+                        WeatherRouter.cacheKeyFor(location, grid),
+                        location.latitude(),
+                        location.longitude(),
+                        radiusKm,
+                        data);
+                hasUnrenderedSamples |= isStored;
+            }
+
+            @Override
+            public void onItemFailed(WeatherLocation location, String message, long elapsedMillis) {
+                Log.w(TAG, "Heatmap sample failed: " + message);
+            }
+
+            @Override
+            public void onBatchFinished(int succeeded, int failed, long elapsedMillis) {
+                redrawHeatmapIfNeeded();
+            }
+        });
+    }
+
+    private void redrawHeatmapIfNeeded() {
+        if (hasUnrenderedSamples && heatmapOverlay != null) {
+            hasUnrenderedSamples = false;
+            heatmapOverlay.clearTileCache();
+        }
+    }
+
+    @Override
+    public void onPreviewLoading() {
+        weatherPreview.setText(R.string.map_preview_loading);
+        weatherPreview.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onPreviewLoaded(WeatherData data) {
+        String place = !TextUtils.isEmpty(data.location())
+                ? data.location()
+                : resolveLabel(previewLat, previewLng);
+        String weather = WeatherNotificationManager.buildContentText(
+                data.temperature(), data.description());
+        weatherPreview.setText(getString(R.string.map_preview_label, place, weather));
+        weatherPreview.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onPreviewError(String message) {
+        weatherPreview.setText(R.string.map_preview_unavailable);
+        weatherPreview.setVisibility(View.VISIBLE);
+    }
+
     @Override
     public void onMapClick(LatLng latLng) {
         if (latLng == null) {
@@ -71,7 +240,7 @@ public class MapPickerActivity extends FragmentActivity
         }
         selectedLat = latLng.latitude;
         selectedLng = latLng.longitude;
-        selectedLabel = formatLatLng(selectedLat, selectedLng);
+        selectedLabel = resolveLabel(selectedLat, selectedLng);
 
         if (currentMarker == null) {
             currentMarker = googleMap.addMarker(new MarkerOptions()
@@ -80,13 +249,41 @@ public class MapPickerActivity extends FragmentActivity
                     .snippet(selectedLabel));
         } else {
             currentMarker.setPosition(latLng);
-            currentMarker.setSnippet(selectedLabel);
         }
+        showSelectedLabel();
+        googleMap.animateCamera(CameraUpdateFactory.newLatLng(latLng));
+    }
+
+    private void showSelectedLabel() {
         if (currentMarker != null) {
+            currentMarker.setSnippet(selectedLabel);
             currentMarker.showInfoWindow();
         }
         selectionInfo.setText(getString(R.string.map_selection_label, selectedLabel));
-        googleMap.animateCamera(CameraUpdateFactory.newLatLng(latLng));
+    }
+
+    private void preloadNearestCityIndex() {
+        if (NearestCityIndex.peek() != null) {
+            return;
+        }
+        GEOCODER_EXECUTOR.execute(() -> {
+            NearestCityIndex.getInstance(getApplicationContext());
+            mainHandler.post(() -> {
+                if (isFinishing() || isDestroyed() || Double.isNaN(selectedLat)) {
+                    return;
+                }
+                selectedLabel = resolveLabel(selectedLat, selectedLng);
+                showSelectedLabel();
+            });
+        });
+    }
+
+    private String resolveLabel(double latitude, double longitude) {
+        NearestCityIndex index = NearestCityIndex.peek();
+        CityDatabase.City city = index != null
+                ? index.nearest(latitude, longitude, MAX_LABEL_DISTANCE_KM)
+                : null;
+        return city != null ? city.label() : formatLatLng(latitude, longitude);
     }
 
     private void applyMapPaddingWhenReady() {
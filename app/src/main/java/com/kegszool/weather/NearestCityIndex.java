@@ -0,0 +1,177 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+
+/**
+ * Offline reverse geocoder over {@link CityDatabase}. Cities are projected
+ * onto the unit sphere and stored in an implicit k-d tree (the median of
+ * each range sits at its middle), so a nearest-neighbour lookup touches
+ * O(log n) nodes, allocates nothing and handles the antimeridian and poles
+ * without special cases.
+ */
+final class NearestCityIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final int DIMENSIONS = 3;
+
+    private static volatile NearestCityIndex instance;
+
+    private final CityDatabase cities;
+    private final double[] points;
+    private final int[] cityIndexes;
+    private final int size;
+
+    NearestCityIndex(CityDatabase cities) {
+        this.cities = cities;
+        int count = 0;
+        int[] indexes = new int[cities.size()];
+        for (int i = 0; i < cities.size(); i++) {
+            if (!Double.isNaN(cities.latitudeAt(i)) && !Double.isNaN(cities.longitudeAt(i))) {
+                indexes[count++] = i;
+            }
+        }
+        this.size = count;
+        this.cityIndexes = new int[count];
+        this.points = new double[count * DIMENSIONS];
+        for (int i = 0; i < count; i++) {
+            cityIndexes[i] = indexes[i];
+            project(cities.latitudeAt(indexes[i]), cities.longitudeAt(indexes[i]), points, i);
+        }
+        build(0, count, 0);
+    }
+
+    /** Builds the index on first use. Call off the main thread. */
+    static NearestCityIndex getInstance(Context context) {
+        NearestCityIndex result = instance;
+        if (result == null) {
+            synchronized (NearestCityIndex.class) {
+                result = instance;
+                if (result == null) {
+                    result = new NearestCityIndex(CityDatabase.getInstance(context));
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The index if it has already been built, otherwise null. */
+    static NearestCityIndex peek() {
+        return instance;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The city closest to the point, or null when it is farther than
+     * {@code maxDistanceKm} or the database has no coordinates.
+     */
+    CityDatabase.City nearest(double latitude, double longitude, double maxDistanceKm) {
+        if (size == 0 || Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return null;
+        }
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double x = Math.cos(phi) * Math.cos(lambda);
+        double y = Math.cos(phi) * Math.sin(lambda);
+        double z = Math.sin(phi);
+
+        double chord = 2 * Math.sin(Math.min(maxDistanceKm / EARTH_RADIUS_KM, Math.PI) / 2);
+        double[] best = {chord * chord + 1e-12, -1};
+        search(0, size, 0, x, y, z, best);
+        return best[1] >= 0 ? cities.get(cityIndexes[(int) best[1]]) : null;
+    }
+
+    private void search(int from, int to, int axis, double x, double y, double z, double[] best) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            int offset = middle * DIMENSIONS;
+            double dx = points[offset] - x;
+            double dy = points[offset + 1] - y;
+            double dz = points[offset + 2] - z;
+            double distance = dx * dx + dy * dy + dz * dz;
+            if (distance < best[0]) {
+                best[0] = distance;
+                best[1] = middle;
+            }
+
+            double target = axis == 0 ? x : axis == 1 ? y : z;
+            double split = target - points[offset + axis];
+            int nextAxis = (axis + 1) % DIMENSIONS;
+            if (split < 0) {
+                search(from, middle, nextAxis, x, y, z, best);
+                if (split * split >= best[0]) {
+                    return;
+                }
+                from = middle + 1;
+            } else {
+                search(middle + 1, to, nextAxis, x, y, z, best);
+                if (split * split >= best[0]) {
+                    return;
+                }
+                to = middle;
+            }
+            axis = nextAxis;
+        }
+    }
+
+    private void build(int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        int nextAxis = (axis + 1) % DIMENSIONS;
+        build(from, middle, nextAxis);
+        build(middle + 1, to, nextAxis);
+    }
+
+    /** Quickselect: moves the k-th smallest point on {@code axis} to position k. */
+    private void select(int left, int right, int k, int axis) {
+        while (left < right) {
+            double pivot = points[((left + right) >>> 1) * DIMENSIONS + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (points[i * DIMENSIONS + axis] < pivot) {
+                    i++;
+                }
+                while (points[j * DIMENSIONS + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int first, int second) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double point = points[first * DIMENSIONS + d];
+            points[first * DIMENSIONS + d] = points[second * DIMENSIONS + d];
+            points[second * DIMENSIONS + d] = point;
+        }
+        int city = cityIndexes[first];
+        cityIndexes[first] = cityIndexes[second];
+        cityIndexes[second] = city;
+    }
+
+    private static void project(double latitude, double longitude, double[] target, int index) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        int offset = index * DIMENSIONS;
+        target[offset] = Math.cos(phi) * Math.cos(lambda);
+        target[offset + 1] = Math.cos(phi) * Math.sin(lambda);
+        target[offset + 2] = Math.sin(phi);
+    }
+}
@@ -6,7 +6,16 @@ import java.util.Map;
 
 public final class PopularCities {
 
-    private static final Map<String, String> CITIES = createCities();
+    private static final Map<String, String> CITIES;
+    private static final Map<String, double[]> COORDINATES;
+
+    static {
+        Map<String, String> cities = new LinkedHashMap<>();
+        Map<String, double[]> coordinates = new LinkedHashMap<>();
+        createCities(cities, coordinates);
+        CITIES = Collections.unmodifiableMap(cities);
+        COORDINATES = Collections.unmodifiableMap(coordinates);
+    }
 
     private PopularCities() {}
 
@@ -14,109 +23,128 @@ public final class PopularCities {
         return CITIES;
     }
 
-    private static Map<String, String> createCities() {
-        Map<String, String> cities = new LinkedHashMap<>();
-        cities.put("Moscow", "Москва");
-        cities.put("Saint Petersburg", "Санкт-Петербург");
-        cities.put("Novosibirsk", "Новосибирск");
-        cities.put("Yekaterinburg", "Екатеринбург");
-        cities.put("Kazan", "Казань");
-        cities.put("Nizhny Novgorod", "Нижний Новгород");
-        cities.put("Chelyabinsk", "Челябинск");
-        cities.put("Samara", "Самара");
-        cities.put("Omsk", "Омск");
-        cities.put("Rostov-on-Don", "Ростов-на-Дону");
-        cities.put("Ufa", "Уфа");
-        cities.put("Krasnoyarsk", "Красноярск");
-        cities.put("Perm", "Пермь");
-        cities.put("Voronezh", "Воронеж");
-        cities.put("Volgograd", "Волгоград");
-        cities.put("Krasnodar", "Краснодар");
-        cities.put("Sochi", "Сочи");
-        cities.put("Kaliningrad", "Калининград");
-        cities.put("Vladivostok", "Владивосток");
-        cities.put("Murmansk", "Мурманск");
-        cities.put("Khabarovsk", "Хабаровск");
-        cities.put("Irkutsk", "Иркутск");
-        cities.put("Yakutsk", "Якутск");
-        cities.put("Astrakhan", "Астрахань");
-        cities.put("Saratov", "Саратов");
-        cities.put("Petropavlovsk-Kamchatsky", "Петропавловск-Камчатский");
+    /** Approximate city centre as {@code {latitude, longitude}}, or null. */
+    public static double[] getCoordinates(String englishName) {
+        double[] coordinates = COORDINATES.get(englishName);
+        return coordinates != null ? coordinates.clone() : null;
+    }
+
+    private static void createCities(
+        Map<String, String> cities,
+        Map<String, double[]> coordinates
+    ) {
+        put(cities, coordinates, "Moscow", "Москва", 55.7558, 37.6173);
+        put(cities, coordinates, "Saint Petersburg", "Санкт-Петербург", 59.9343, 30.3351);
+        put(cities, coordinates, "Novosibirsk", "Новосибирск", 55.0084, 82.9357);
+        put(cities, coordinates, "Yekaterinburg", "Екатеринбург", 56.8389, 60.6057);
+        put(cities, coordinates, "Kazan", "Казань", 55.7961, 49.1064);
+        put(cities, coordinates, "Nizhny Novgorod", "Нижний Новгород", 56.2965, 43.9361);
+        put(cities, coordinates, "Chelyabinsk", "Челябинск", 55.1644, 61.4368);
+        put(cities, coordinates, "Samara", "Самара", 53.1959, 50.1002);
+        put(cities, coordinates, "Omsk", "Омск", 54.9885, 73.3242);
+        put(cities, coordinates, "Rostov-on-Don", "Ростов-на-Дону", 47.2357, 39.7015);
+        put(cities, coordinates, "Ufa", "Уфа", 54.7388, 55.9721);
+        put(cities, coordinates, "Krasnoyarsk", "Красноярск", 56.0153, 92.8932);
+        put(cities, coordinates, "Perm", "Пермь", 58.0105, 56.2502);
+        put(cities, coordinates, "Voronezh", "Воронеж", 51.6755, 39.2089);
+        put(cities, coordinates, "Volgograd", "Волгоград", 48.7080, 44.5133);
+        put(cities, coordinates, "Krasnodar", "Краснодар", 45.0355, 38.9753);
+        put(cities, coordinates, "Sochi", "Сочи", 43.6028, 39.7342);
+        put(cities, coordinates, "Kaliningrad", "Калининград", 54.7104, 20.4522);
+        put(cities, coordinates, "Vladivostok", "Владивосток", 43.1155, 131.8855);
+        put(cities, coordinates, "Murmansk", "Мурманск", 68.9585, 33.0827);
+        put(cities, coordinates, "Khabarovsk", "Хабаровск", 48.4802, 135.0719);
+        put(cities, coordinates, "Irkutsk", "Иркутск", 52.2870, 104.3050);
+        put(cities, coordinates, "Yakutsk", "Якутск", 62.0355, 129.6755);
+        put(cities, coordinates, "Astrakhan", "Астрахань", 46.3479, 48.0336);
+        put(cities, coordinates, "Saratov", "Саратов", 51.5336, 46.0343);
+        put(cities, coordinates, "Petropavlovsk-Kamchatsky", "Петропавловск-Камчатский", 53.0452, 158.6483);
 
         // Europe
-        cities.put("London", "Лондон");
-        cities.put("Paris", "Париж");
-        cities.put("Berlin", "Берлин");
-        cities.put("Rome", "Рим");
-        cities.put("Madrid", "Мадрид");
-        cities.put("Barcelona", "Барселона");
-        cities.put("Vienna", "Вена");
-        cities.put("Prague", "Прага");
-        cities.put("Warsaw", "Варшава");
-        cities.put("Budapest", "Будапешт");
-        cities.put("Amsterdam", "Амстердам");
-        cities.put("Brussels", "Брюссель");
-        cities.put("Stockholm", "Стокгольм");
-        cities.put("Oslo", "Осло");
-        cities.put("Copenhagen", "Копенгаген");
-        cities.put("Athens", "Афины");
-        cities.put("Helsinki", "Хельсинки");
-        cities.put("Dublin", "Дублин");
-        cities.put("Zurich", "Цюрих");
-        cities.put("Lisbon", "Лиссабон");
+        put(cities, coordinates, "London", "Лондон", 51.5074, -0.1278);
+        put(cities, coordinates, "Paris", "Париж", 48.8566, 2.3522);
+        put(cities, coordinates, "Berlin", "Берлин", 52.5200, 13.4050);
+        put(cities, coordinates, "Rome", "Рим", 41.9028, 12.4964);
+        put(cities, coordinates, "Madrid", "Мадрид", 40.4168, -3.7038);
+        put(cities, coordinates, "Barcelona", "Барселона", 41.3874, 2.1686);
+        put(cities, coordinates, "Vienna", "Вена", 48.2082, 16.3738);
+        put(cities, coordinates, "Prague", "Прага", 50.0755, 14.4378);
+        put(cities, coordinates, "Warsaw", "Варшава", 52.2297, 21.0122);
+        put(cities, coordinates, "Budapest", "Будапешт", 47.4979, 19.0402);
+        put(cities, coordinates, "Amsterdam", "Амстердам", 52.3676, 4.9041);
+        put(cities, coordinates, "Brussels", "Брюссель", 50.8503, 4.3517);
+        put(cities, coordinates, "Stockholm", "Стокгольм", 59.3293, 18.0686);
+        put(cities, coordinates, "Oslo", "Осло", 59.9139, 10.7522);
+        put(cities, coordinates, "Copenhagen", "Копенгаген", 55.6761, 12.5683);
+        put(cities, coordinates, "Athens", "Афины", 37.9838, 23.7275);
+        put(cities, coordinates, "Helsinki", "Хельсинки", 60.1699, 24.9384);
+        put(cities, coordinates, "Dublin", "Дублин", 53.3498, -6.2603);
+        put(cities, coordinates, "Zurich", "Цюрих", 47.3769, 8.5417);
+        put(cities, coordinates, "Lisbon", "Лиссабон", 38.7223, -9.1393);
 
         // Asia
-        cities.put("Tokyo", "Токио");
-        cities.put("Seoul", "Сеул");
-        cities.put("Beijing", "Пекин");
-        cities.put("Shanghai", "Шанхай");
-        cities.put("Hong Kong", "Гонконг");
-        cities.put("Dubai", "Дубай");
-        cities.put("Bangkok", "Бангкок");
-        cities.put("Singapore", "Сингапур");
-        cities.put("New Delhi", "Нью-Дели");
-        cities.put("Mumbai", "Мумбаи");
-        cities.put("Jakarta", "Джакарта");
-        cities.put("Ho Chi Minh City", "Хошимин");
-        cities.put("Manila", "Манила");
-        cities.put("Tel Aviv", "Тель-Авив");
-        cities.put("Riyadh", "Эр-Рияд");
+        put(cities, coordinates, "Tokyo", "Токио", 35.6762, 139.6503);
+        put(cities, coordinates, "Seoul", "Сеул", 37.5665, 126.9780);
+        put(cities, coordinates, "Beijing", "Пекин", 39.9042, 116.4074);
+        put(cities, coordinates, "Shanghai", "Шанхай", 31.2304, 121.4737);
+        put(cities, coordinates, "Hong Kong", "Гонконг", 22.3193, 114.1694);
+        put(cities, coordinates, "Dubai", "Дубай", 25.2048, 55.2708);
+        put(cities, coordinates, "Bangkok", "Бангкок", 13.7563, 100.5018);
+        put(cities, coordinates, "Singapore", "Сингапур", 1.3521, 103.8198);
+        put(cities, coordinates, "New Delhi", "Нью-Дели", 28.6139, 77.2090);
+        put(cities, coordinates, "Mumbai", "Мумбаи", 19.0760, 72.8777);
+        put(cities, coordinates, "Jakarta", "Джакарта", -6.2088, 106.8456);
+        put(cities, coordinates, "Ho Chi Minh City", "Хошимин", 10.8231, 106.6297);
+        put(cities, coordinates, "Manila", "Манила", 14.5995, 120.9842);
+        put(cities, coordinates, "Tel Aviv", "Тель-Авив", 32.0853, 34.7818);
+        put(cities, coordinates, "Riyadh", "Эр-Рияд", 24.7136, 46.6753);
 
         // North America
-        cities.put("New York", "Нью-Йорк");
-        cities.put("Los Angeles", "Лос-Анджелес");
-        cities.put("Chicago", "Чикаго");
-        cities.put("Houston", "Хьюстон");
-        cities.put("Miami", "Майами");
-        cities.put("San Francisco", "Сан-Франциско");
-        cities.put("Seattle", "Сиэтл");
-        cities.put("Toronto", "Торонто");
-        cities.put("Montreal", "Монреаль");
-        cities.put("Vancouver", "Ванкувер");
-        cities.put("Mexico City", "Мехико");
-        cities.put("Las Vegas", "Лас-Вегас");
+        put(cities, coordinates, "New York", "Нью-Йорк", 40.7128, -74.0060);
+        put(cities, coordinates, "Los Angeles", "Лос-Анджелес", 34.0522, -118.2437);
+        put(cities, coordinates, "Chicago", "Чикаго", 41.8781, -87.6298);
+        put(cities, coordinates, "Houston", "Хьюстон", 29.7604, -95.3698);
+        put(cities, coordinates, "Miami", "Майами", 25.7617, -80.1918);
+        put(cities, coordinates, "San Francisco", "Сан-Франциско", 37.7749, -122.4194);
+        put(cities, coordinates, "Seattle", "Сиэтл", 47.6062, -122.3321);
+        put(cities, coordinates, "Toronto", "Торонто", 43.6532, -79.3832);
+        put(cities, coordinates, "Montreal", "Монреаль", 45.5017, -73.5673);
+        put(cities, coordinates, "Vancouver", "Ванкувер", 49.2827, -123.1207);
+        put(cities, coordinates, "Mexico City", "Мехико", 19.4326, -99.1332);
+        put(cities, coordinates, "Las Vegas", "Лас-Вегас", 36.1699, -115.1398);
 
         // South America
-        cities.put("Buenos Aires", "Буэнос-Айрес");
-        cities.put("Sao Paulo", "Сан-Паулу");
-        cities.put("Rio de Janeiro", "Рио-де-Жанейро");
-        cities.put("Lima", "Лима");
-        cities.put("Bogota", "Богота");
-        cities.put("Santiago", "Сантьяго");
+        put(cities, coordinates, "Buenos Aires", "Буэнос-Айрес", -34.6037, -58.3816);
+        put(cities, coordinates, "Sao Paulo", "Сан-Паулу", -23.5505, -46.6333);
+        put(cities, coordinates, "Rio de Janeiro", "Рио-де-Жанейро", -22.9068, -43.1729);
+        put(cities, coordinates, "Lima", "Лима", -12.0464, -77.0428);
+        put(cities, coordinates, "Bogota", "Богота", 4.7110, -74.0721);
+        put(cities, coordinates, "Santiago", "Сантьяго", -33.4489, -70.6693);
 
         // Africa
-        cities.put("Cairo", "Каир");
-        cities.put("Cape Town", "Кейптаун");
-        cities.put("Johannesburg", "Йоханнесбург");
-        cities.put("Nairobi", "Найроби");
-        cities.put("Casablanca", "Касабланка");
+        put(cities, coordinates, "Cairo", "Каир", 30.0444, 31.2357);
+        put(cities, coordinates, "Cape Town", "Кейптаун", -33.9249, 18.4241);
+        put(cities, coordinates, "Johannesburg", "Йоханнесбург", -26.2041, 28.0473);
+        put(cities, coordinates, "Nairobi", "Найроби", -1.2921, 36.8219);
+        put(cities, coordinates, "Casablanca", "Касабланка", 33.5731, -7.5898);
 
         // Oceania
-        cities.put("Sydney", "Сидней");
-        cities.put("Melbourne", "Мельбурн");
-        cities.put("Auckland", "Окленд");
-        cities.put("Brisbane", "Брисбен");
-        cities.put("Perth", "Перт");
-        return Collections.unmodifiableMap(cities);
+        put(cities, coordinates, "Sydney", "Сидней", -33.8688, 151.2093);
+        put(cities, coordinates, "Melbourne", "Мельбурн", -37.8136, 144.9631);
+        put(cities, coordinates, "Auckland", "Окленд", -36.8485, 174.7633);
+        put(cities, coordinates, "Brisbane", "Брисбен", -27.4698, 153.0251);
+        put(cities, coordinates, "Perth", "Перт", -31.9505, 115.8605);
+    }
+
+    private static void put(
+        Map<String, String> cities,
+        Map<String, double[]> coordinates,
+        String englishName,
+        String russianName,
+        double latitude,
+        double longitude
+    ) {
+        cities.put(englishName, russianName);
+        coordinates.put(englishName, new double[] {latitude, longitude});
     }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.kegszool.weather;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter. A server-provided
+ * {@code Retry-After} wins over the computed delay and is never shortened;
+ * when it is longer than {@link #maxDelayMillis} the request is not retried.
+ */
+public final class RetryPolicy {
+
+    private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(3, 500L, 8000L);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(0L, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public boolean canRetry(int attemptsMade) {
+        return attemptsMade < maxAttempts;
+    }
+
+    public boolean isRetryableStatus(int code) {
+        return code == 429 || (code >= 500 && code < 600);
+    }
+
+    /** Delay before the next attempt, or -1 when the server asked to wait too long. */
+    public long delayMillis(int attemptsMade, long retryAfterMillis) {
+        if (retryAfterMillis >= 0L) {
+            return retryAfterMillis <= maxDelayMillis ? retryAfterMillis : -1L;
+        }
+        int shift = Math.min(Math.max(0, attemptsMade - 1), 20);
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    static long parseRetryAfterMillis(String value, long nowMillis) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1L;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0L, Long.parseLong(trimmed) * 1000L);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            SimpleDateFormat httpDateFormat = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+            httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+            Date date = httpDateFormat.parse(trimmed);
+            return date != null ? Math.max(0L, date.getTime() - nowMillis) : -1L;
+        } catch (ParseException ignored) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.kegszool.weather;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Current temperatures at the centres of grid cells fetched for the map
+ * heatmap, keyed by the same cache key the forecasts are stored under.
+ * Each sample carries the radius it is trusted over, which follows the
+ * spacing it was sampled at.
+ */
+final class TemperatureSamples {
+
+    static final long MAX_AGE_MS = 60L * 60L * 1000L;
+
+    private static final TemperatureSamples INSTANCE = new TemperatureSamples();
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final Map<String, Sample> samples = new HashMap<>();
+
+    private TemperatureSamples() {}
+
+    static TemperatureSamples getInstance() {
+        return INSTANCE;
+    }
+
+    /** Stores the first hourly temperature of {@code data}; returns false if it has none. */
+    synchronized boolean put(
+        String key,
+        double latitude,
+        double longitude,
+        double radiusKm,
+        WeatherData data
+    ) {
+        if (key == null || data == null) {
+            return false;
+        }
+        for (WeatherData.HourlyForecast forecast : data.hourlyForecasts()) {
+            if (!Double.isNaN(forecast.temperature())) {
+                samples.put(key, new Sample(
+                        latitude,
+                        longitude,
+                        forecast.temperature(),
+                        radiusKm,
+                        System.currentTimeMillis()));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized boolean isFresh(String key) {
+        Sample sample = samples.get(key);
+        return sample != null && System.currentTimeMillis() - sample.updatedAtMillis() < MAX_AGE_MS;
+    }
+
+    /** Fresh samples whose radius reaches into the given box. */
+    synchronized List<Sample> near(double south, double west, double north, double east) {
+        long now = System.currentTimeMillis();
+        List<Sample> result = new ArrayList<>();
+        Iterator<Sample> iterator = samples.values().iterator();
+        while (iterator.hasNext()) {
+            Sample sample = iterator.next();
+            if (now - sample.updatedAtMillis() >= MAX_AGE_MS) {
+                iterator.remove();
+                continue;
+            }
+            double latitudeMargin = sample.radiusKm() / KM_PER_DEGREE;
+            double longitudeMargin = latitudeMargin / Math.max(0.05, Math.cos(Math.toRadians(sample.latitude())));
+            if (sample.latitude() + latitudeMargin >= south
+                    && sample.latitude() - latitudeMargin <= north
+                    && sample.longitude() + longitudeMargin >= west
+                    && sample.longitude() - longitudeMargin <= east) {
+                result.add(sample);
+            }
+        }
+        return result;
+    }
+
+    record Sample(
+        double latitude,
+        double longitude,
+        double temperature,
+        double radiusKm,
+        long updatedAtMillis
+    ) {}
+}
@@ -0,0 +1,183 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Heatmap of current temperature built from {@link TemperatureSamples}.
+ * Each tile is interpolated by inverse distance weighting on a coarse
+ * grid, upscaled with filtering and faded out where no sample reaches.
+ * The map calls {@link #getTile} on its own worker threads; rendered
+ * tiles are reused until a newer sample reaches them or they age out.
+ */
+final class TemperatureTileProvider implements TileProvider {
+
+    private static final int TILE_SIZE = 256;
+    private static final int GRID_SIZE = 32;
+    private static final int MAX_ALPHA = 150;
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private static final double[] RAMP_TEMPERATURES = {-30, -15, 0, 10, 20, 30, 40};
+    private static final int[] RAMP_COLORS = {
+            0x3F1D8C, 0x2F6FDB, 0x6FD0F0, 0x7DD87A, 0xF4D35E, 0xF08A3C, 0xC8283C
+    };
+
+    private final HeatmapTileCache cache;
+    private final TemperatureSamples samples = TemperatureSamples.getInstance();
+
+    TemperatureTileProvider(Context context) {
+        this.cache = new HeatmapTileCache(context.getApplicationContext());
+    }
+
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        double north = tileLatitude(y, zoom);
+        double south = tileLatitude(y + 1, zoom);
+        double west = tileLongitude(x, zoom);
+        double east = tileLongitude(x + 1, zoom);
+        List<TemperatureSamples.Sample> nearby = samples.near(south, west, north, east);
+
+        long newestSample = 0L;
+        for (TemperatureSamples.Sample sample : nearby) {
+            newestSample = Math.max(newestSample, sample.updatedAtMillis());
+        }
+        String key = String.format(Locale.US, "%d_%d_%d.png", zoom, x, y);
+        HeatmapTileCache.Entry cached = cache.get(key);
+        long now = System.currentTimeMillis();
+        if (cached != null
+                && cached.renderedAtMillis() >= newestSample
+                && now - cached.renderedAtMillis() < TemperatureSamples.MAX_AGE_MS) {
+            return toTile(cached.png());
+        }
+        if (nearby.isEmpty()) {
+            cache.putBlank(key);
+            return NO_TILE;
+        }
+
+        int[] pixels = render(x, y, zoom, nearby, GRID_SIZE);
+        if (isTransparent(pixels)) {
+            cache.putBlank(key);
+            return NO_TILE;
+        }
+        byte[] png = encode(pixels);
+        cache.put(key, png);
+        return toTile(png);
+    }
+
+    /**
+     * Renders {@code size}×{@code size} ARGB pixels for the tile, sampling
+     * each pixel at its centre in Web Mercator. Pixels no sample reaches
+     * are 0 (fully transparent).
+     */
+    static int[] render(int x, int y, int zoom, List<TemperatureSamples.Sample> samples, int size) {
+        int[] pixels = new int[size * size];
+        double tiles = 1 << zoom;
+        for (int row = 0; row < size; row++) {
+            double latitude = mercatorLatitude((y + (row + 0.5) / size) / tiles);
+            double cosLatitude = Math.cos(Math.toRadians(latitude));
+            for (int column = 0; column < size; column++) {
+                double longitude = (x + (column + 0.5) / size) / tiles * 360.0 - 180.0;
+                pixels[row * size + column] = shade(latitude, longitude, cosLatitude, samples);
+            }
+        }
+        return pixels;
+    }
+
+    private static int shade(
+        double latitude,
+        double longitude,
+        double cosLatitude,
+        List<TemperatureSamples.Sample> samples
+    ) {
+        double weightSum = 0;
+        double valueSum = 0;
+        double coverage = 0;
+        for (TemperatureSamples.Sample sample : samples) {
+            double dLatitude = (sample.latitude() - latitude) * KM_PER_DEGREE;
+            double dLongitude = wrapLongitude(sample.longitude() - longitude) * KM_PER_DEGREE * cosLatitude;
+            double distanceSquared = dLatitude * dLatitude + dLongitude * dLongitude;
+            double radius = sample.radiusKm();
+            if (distanceSquared >= radius * radius) {
+                continue;
+            }
+            if (distanceSquared < 1e-6) {
+                return color(sample.temperature(), 1.0);
+            }
+            double weight = 1.0 / distanceSquared;
+            weightSum += weight;
+            valueSum += weight * sample.temperature();
+            coverage = Math.max(coverage, 1.0 - Math.sqrt(distanceSquared) / radius);
+        }
+        if (weightSum == 0) {
+            return 0;
+        }
+        return color(valueSum / weightSum, coverage);
+    }
+
+    private static int color(double temperature, double coverage) {
+        int index = 0;
+        while (index < RAMP_TEMPERATURES.length - 2 && temperature > RAMP_TEMPERATURES[index + 1]) {
+            index++;
+        }
+        double span = RAMP_TEMPERATURES[index + 1] - RAMP_TEMPERATURES[index];
+        double t = Math.max(0.0, Math.min(1.0, (temperature - RAMP_TEMPERATURES[index]) / span));
+        int from = RAMP_COLORS[index];
+        int to = RAMP_COLORS[index + 1];
+        int red = blend(from >> 16, to >> 16, t);
+        int green = blend(from >> 8, to >> 8, t);
+        int blue = blend(from, to, t);
+        int alpha = (int) Math.round(MAX_ALPHA * Math.min(1.0, coverage * 2.0));
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    private static int blend(int from, int to, double t) {
+        int start = from & 0xFF;
+        return (int) Math.round(start + ((to & 0xFF) - start) * t);
+    }
+
+    private static byte[] encode(int[] pixels) {
+        Bitmap grid = Bitmap.createBitmap(pixels, GRID_SIZE, GRID_SIZE, Bitmap.Config.ARGB_8888);
+        Bitmap tile = Bitmap.createScaledBitmap(grid, TILE_SIZE, TILE_SIZE, true);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        tile.compress(Bitmap.CompressFormat.PNG, 100, stream);
+        grid.recycle();
+        tile.recycle();
+        return stream.toByteArray();
+    }
+
+    private static Tile toTile(byte[] png) {
+        return png == null || png.length == 0 ? NO_TILE : new Tile(TILE_SIZE, TILE_SIZE, png);
+    }
+
+    private static boolean isTransparent(int[] pixels) {
+        for (int pixel : pixels) {
+            if (pixel >>> 24 != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double tileLatitude(int y, int zoom) {
+        return mercatorLatitude((double) y / (1 << zoom));
+    }
+
+    private static double tileLongitude(int x, int zoom) {
+        return (double) x / (1 << zoom) * 360.0 - 180.0;
+    }
+
+    private static double mercatorLatitude(double worldY) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1.0 - 2.0 * worldY))));
+    }
+
+    private static double wrapLongitude(double degrees) {
+        return ((degrees + 540.0) % 360.0) - 180.0;
+    }
+}
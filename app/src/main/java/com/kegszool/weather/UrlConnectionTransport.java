@@ -0,0 +1,88 @@
+package com.kegszool.weather;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Default {@link WeatherTransport} on top of the platform
+ * {@link HttpURLConnection}. Connections are never disconnected explicitly:
+ * fully read and closed bodies return their socket to the platform pool so
+ * back-to-back refreshes skip DNS, TCP and TLS setup. The pool's defaults
+ * (five idle connections kept for five minutes) are left untouched, since
+ * they are process-wide and shared with every other HTTP client in the app.
+ */
+public final class UrlConnectionTransport implements WeatherTransport {
+
+    private static final int IO_BUFFER_SIZE = 8 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    @Override
+    public Response get(String endpoint) throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setUseCaches(true);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+
+        try {
+            long startedAt = System.nanoTime();
+            connection.connect();
+            long connectedAt = System.nanoTime();
+            int responseCode = connection.getResponseCode();
+            long firstByteAt = System.nanoTime();
+
+            InputStream stream = responseCode >= HttpURLConnection.HTTP_OK &&
+                    responseCode < HttpURLConnection.HTTP_MULT_CHOICE
+                    ? connection.getInputStream()
+                    : connection.getErrorStream();
+            if (stream != null) {
+                stream = maybeUnzip(connection, stream);
+            }
+
+            Timings timings = new Timings(
+                    TimeUnit.NANOSECONDS.toMillis(connectedAt - startedAt),
+                    TimeUnit.NANOSECONDS.toMillis(firstByteAt - connectedAt)
+            );
+            return new ConnectionResponse(responseCode, connection, stream, timings);
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private InputStream maybeUnzip(
+        HttpURLConnection connection,
+        InputStream source
+    ) throws IOException {
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            return new GZIPInputStream(source, IO_BUFFER_SIZE);
+        }
+        return source;
+    }
+
+    private record ConnectionResponse(
+        int code,
+        HttpURLConnection connection,
+        InputStream body,
+        Timings timings
+    ) implements Response {
+
+        @Override
+        public String header(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.kegszool.weather;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Loads forecasts for several locations at once. Requests are fanned out
+ * up to a concurrency cap and every location reports its own result as
+ * soon as it is ready, so one slow or failing city does not hold back the
+ * rest. Must be started and cancelled on the main thread.
+ */
+public final class WeatherBatch {
+
+    public interface Callback {
+        void onItemLoaded(WeatherLocation location, WeatherData data, long elapsedMillis);
+        void onItemFailed(WeatherLocation location, String message, long elapsedMillis);
+        void onBatchFinished(int succeeded, int failed, long elapsedMillis);
+    }
+
+    private final WeatherRouter router;
+    private final Deque<WeatherLocation> pending;
+    private final int maxConcurrency;
+    private final WeatherDispatcher.Priority priority;
+    private final Callback callback;
+    private final WeatherMemoryCache cache = WeatherMemoryCache.getInstance();
+    private final List<WeatherService> activeServices = new ArrayList<>();
+
+    private long startedAtMillis;
+    private int succeeded;
+    private int failed;
+    private boolean isCancelled;
+    private boolean isFinished;
+
+    WeatherBatch(
+        WeatherRouter router,
+        List<WeatherLocation> locations,
+        int maxConcurrency,
+        WeatherDispatcher.Priority priority,
+        Callback callback
+    ) {
+        this.router = router;
+        this.pending = locations != null
+                ? new ArrayDeque<>(locations)
+                : new ArrayDeque<>();
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.priority = priority;
+        this.callback = callback;
+    }
+
+    void start() {
+        startedAtMillis = SystemClock.elapsedRealtime();
+        pump();
+    }
+
+    public void cancel() {
+        isCancelled = true;
+        pending.clear();
+        for (WeatherService service : activeServices) {
+            service.cancel();
+        }
+        activeServices.clear();
+    }
+
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    private void pump() {
+        while (!isCancelled && activeServices.size() < maxConcurrency && !pending.isEmpty()) {
+            startItem(pending.poll());
+        }
+        if (!isCancelled && !isFinished && pending.isEmpty() && activeServices.isEmpty()) {
+            isFinished = true;
+            if (callback != null) {
+                callback.onBatchFinished(
+                        succeeded,
+                        failed,
+                        SystemClock.elapsedRealtime() - startedAtMillis);
+            }
+        }
+    }
+
+    private void startItem(WeatherLocation location) {
+
+        WeatherRouter.Endpoint endpoint = router.resolve(location);
+        if (endpoint == null) {
+            reportFailure(location, "Invalid request", 0L);
+            return;
+        }
+
+        WeatherMemoryCache.Entry cached = cache.get(endpoint.cacheKey());
+        if (cache.isFresh(cached)) {
+            reportSuccess(location, cached.data(), 0L);
+            return;
+        }
+
+        long itemStartedAt = SystemClock.elapsedRealtime();
+        WeatherService[] holder = new WeatherService[1];
+        holder[0] = new WeatherService(new WeatherService.Callback() {
+            @Override
+            public void onWeatherLoaded(WeatherData data) {
+                activeServices.remove(holder[0]);
+                router.remember(endpoint, data);
+                reportSuccess(location, data, SystemClock.elapsedRealtime() - itemStartedAt);
+                pump();
+            }
+
+            @Override
+            public void onCachedWeatherLoaded(WeatherData data, long savedAtMillis, boolean isFresh) {
+                activeServices.remove(holder[0]);
+                reportSuccess(location, data, SystemClock.elapsedRealtime() - itemStartedAt);
+                pump();
+            }
+
+            @Override
+            public void onError(String message) {
+                activeServices.remove(holder[0]);
+                reportFailure(location, message, SystemClock.elapsedRealtime() - itemStartedAt);
+                pump();
+            }
+        });
+        activeServices.add(holder[0]);
+        holder[0].execute(endpoint.url(), priority);
+    }
+
+    private void reportSuccess(WeatherLocation location, WeatherData data, long elapsedMillis) {
+        succeeded++;
+        if (callback != null) {
+            callback.onItemLoaded(location, data, elapsedMillis);
+        }
+    }
+
+    private void reportFailure(WeatherLocation location, String message, long elapsedMillis) {
+        failed++;
+        if (callback != null) {
+            callback.onItemFailed(location, message, elapsedMillis);
+        }
+    }
+}
@@ -12,7 +12,8 @@ public record WeatherData(
     String pressure,
     String windSpeed,
     String visibility,
-    List<DailyForecast> dailyForecasts
+    List<DailyForecast> dailyForecasts,
+    List<HourlyForecast> hourlyForecasts
 ) {
     public WeatherData(
         String location,
@@ -23,7 +24,8 @@ public record WeatherData(
         String pressure,
         String windSpeed,
         String visibility,
-        List<DailyForecast> dailyForecasts
+        List<DailyForecast> dailyForecasts,
+        List<HourlyForecast> hourlyForecasts
     ) {
         this.location = location;
         this.description = description;
@@ -39,6 +41,12 @@ public record WeatherData(
         } else {
             this.dailyForecasts = List.copyOf(dailyForecasts);
         }
+
+        if (hourlyForecasts == null || hourlyForecasts.isEmpty()) {
+            this.hourlyForecasts = Collections.emptyList();
+        } else {
+            this.hourlyForecasts = List.copyOf(hourlyForecasts);
+        }
     }
 
     public record DailyForecast(
@@ -66,28 +74,77 @@ public record WeatherData(
         }
     }
 
+    public record HourlyForecast(
+        long timestamp,
+        String dateTime,
+        double temperature,
+        int humidity,
+        int pressure,
+        double windSpeed,
+        int visibility,
+        int conditionId,
+        String description
+    ) {
+        public HourlyForecast(
+            long timestamp,
+            String dateTime,
+            double temperature,
+            int humidity,
+            int pressure,
+            double windSpeed,
+            int visibility,
+            int conditionId,
+            String description
+        ) {
+            this.timestamp = timestamp;
+            this.dateTime = dateTime != null
+                    ? dateTime
+                    : "";
+            this.temperature = temperature;
+            this.humidity = humidity;
+            this.pressure = pressure;
+            this.windSpeed = windSpeed;
+            this.visibility = visibility;
+            this.conditionId = conditionId;
+            this.description = description != null
+                    ? description
+                    : "";
+        }
+    }
+
     public static final class Result {
 
         private final WeatherData data;
         private final String error;
+        private final long savedAtMillis;
 
-        private Result(WeatherData data, String error) {
+        private Result(WeatherData data, String error, long savedAtMillis) {
             this.data = data;
             this.error = error;
+            this.savedAtMillis = savedAtMillis;
         }
 
         public static Result success(WeatherData data) {
-            return new Result(data, null);
+            return new Result(data, null, -1L);
+        }
+
+        /** Data fetched earlier at {@code savedAtMillis}, served because a fresh load failed. */
+        public static Result stale(WeatherData data, long savedAtMillis) {
+            return new Result(data, null, savedAtMillis);
         }
 
         public static Result error(String message) {
-            return new Result(null, message);
+            return new Result(null, message, -1L);
         }
 
         public boolean isSuccess() {
             return data != null;
         }
 
+        public boolean isStale() {
+            return data != null && savedAtMillis >= 0L;
+        }
+
         public WeatherData getData() {
             return data;
         }
@@ -95,5 +152,9 @@ public record WeatherData(
         public String getError() {
             return error;
         }
+
+        public long getSavedAtMillis() {
+            return savedAtMillis;
+        }
     }
-}
\ No newline at end of file
+}
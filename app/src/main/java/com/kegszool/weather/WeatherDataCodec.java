@@ -0,0 +1,137 @@
+package com.kegszool.weather;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versioned binary layout for a complete {@link WeatherData}. Fields needed
+ * for the first frame come first, so readers can stop before the hourly
+ * section.
+ */
+final class WeatherDataCodec {
+
+    static final int SCHEMA_VERSION = 1;
+
+    private static final int MAGIC = 0x57544844;
+    private static final int MAX_ITEMS = 1024;
+
+    private WeatherDataCodec() {}
+
+    static void write(DataOutput out, WeatherData data, long savedAtMillis) throws IOException {
+
+        out.writeInt(MAGIC);
+        out.writeInt(SCHEMA_VERSION);
+        out.writeLong(savedAtMillis);
+
+        writeString(out, data.location());
+        writeString(out, data.description());
+        out.writeInt(data.conditionId());
+        writeString(out, data.temperature());
+        writeString(out, data.humidity());
+        writeString(out, data.pressure());
+        writeString(out, data.windSpeed());
+        writeString(out, data.visibility());
+
+        List<WeatherData.DailyForecast> daily = data.dailyForecasts();
+        out.writeInt(daily.size());
+        for (WeatherData.DailyForecast forecast : daily) {
+            writeString(out, forecast.dayLabel());
+            writeString(out, forecast.temperature());
+            out.writeInt(forecast.conditionId());
+            writeString(out, forecast.description());
+        }
+
+        List<WeatherData.HourlyForecast> hourly = data.hourlyForecasts();
+        out.writeInt(hourly.size());
+        for (WeatherData.HourlyForecast forecast : hourly) {
+            out.writeLong(forecast.timestamp());
+            writeString(out, forecast.dateTime());
+            out.writeDouble(forecast.temperature());
+            out.writeInt(forecast.humidity());
+            out.writeInt(forecast.pressure());
+            out.writeDouble(forecast.windSpeed());
+            out.writeInt(forecast.visibility());
+            out.writeInt(forecast.conditionId());
+            writeString(out, forecast.description());
+        }
+    }
+
+    static WeatherDataStore.StoredWeather read(DataInput in, boolean includeHourly) throws IOException {
+
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a weather snapshot");
+        }
+        int version = in.readInt();
+        if (version != SCHEMA_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        long savedAtMillis = in.readLong();
+
+        String location = in.readUTF();
+        String description = in.readUTF();
+        int conditionId = in.readInt();
+        String temperature = in.readUTF();
+        String humidity = in.readUTF();
+        String pressure = in.readUTF();
+        String windSpeed = in.readUTF();
+        String visibility = in.readUTF();
+
+        int dailyCount = readCount(in);
+        List<WeatherData.DailyForecast> daily = new ArrayList<>(dailyCount);
+        for (int i = 0; i < dailyCount; i++) {
+            daily.add(new WeatherData.DailyForecast(
+                    in.readUTF(),
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readUTF()
+            ));
+        }
+
+        List<WeatherData.HourlyForecast> hourly = new ArrayList<>();
+        if (includeHourly) {
+            int hourlyCount = readCount(in);
+            for (int i = 0; i < hourlyCount; i++) {
+                hourly.add(new WeatherData.HourlyForecast(
+                        in.readLong(),
+                        in.readUTF(),
+                        in.readDouble(),
+                        in.readInt(),
+                        in.readInt(),
+                        in.readDouble(),
+                        in.readInt(),
+                        in.readInt(),
+                        in.readUTF()
+                ));
+            }
+        }
+
+        WeatherData data = new WeatherData(
+                location,
+                description,
+                conditionId,
+                temperature,
+                humidity,
+                pressure,
+                windSpeed,
+                visibility,
+                daily,
+                hourly
+        );
+        return new WeatherDataStore.StoredWeather(data, savedAtMillis);
+    }
+
+    private static int readCount(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ITEMS) {
+            throw new IOException("Corrupted item count " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeUTF(value != null ? value : "");
+    }
+}
@@ -0,0 +1,105 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists the complete last forecast, including every three-hour entry,
+ * so the full screen can be restored offline or after process death.
+ * Writes go through {@link AtomicFile} on a single writer thread.
+ */
+public final class WeatherDataStore {
+
+    private static final String TAG = "WeatherDataStore";
+    private static final String FILE_NAME = "last_weather.bin";
+    private static final int IO_BUFFER_SIZE = 8 * 1024;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor();
+
+    private WeatherDataStore() {}
+
+    /**
+     * Writes {@code data} stamped with {@code savedAtMillis} on the writer
+     * thread, then runs {@code onSaved} there, whether or not the write
+     * succeeded.
+     */
+    public static void saveAsync(
+        Context context,
+        WeatherData data,
+        long savedAtMillis,
+        Runnable onSaved
+    ) {
+        if (context == null || data == null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        WRITER.execute(() -> {
+            save(appContext, data, savedAtMillis);
+            if (onSaved != null) {
+                onSaved.run();
+            }
+        });
+    }
+
+    public static StoredWeather readFirstFrame(Context context) {
+        return read(context, false);
+    }
+
+    public static StoredWeather read(Context context) {
+        return read(context, true);
+    }
+
+    private static void save(Context context, WeatherData data, long savedAtMillis) {
+        AtomicFile file = getFile(context);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(stream, IO_BUFFER_SIZE));
+            WeatherDataCodec.write(out, data, savedAtMillis);
+            out.flush();
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save weather data", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+
+    private static StoredWeather read(Context context, boolean includeHourly) {
+        if (context == null) {
+            return null;
+        }
+        AtomicFile file = getFile(context);
+        try (FileInputStream stream = file.openRead()) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(stream, IO_BUFFER_SIZE));
+            return WeatherDataCodec.read(in, includeHourly);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable weather data", e);
+            return null;
+        }
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    public record StoredWeather(WeatherData data, long savedAtMillis) {}
+}
@@ -0,0 +1,299 @@
+package com.kegszool.weather;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Forecasts for many locations at once, one row per cache key. Serves as
+ * the disk tier below {@link WeatherMemoryCache}. Writes and
+ * {@link #getAsync} run on a single database thread; writes are queued and
+ * flushed in one transaction, and rows older than the retention window are
+ * pruned along the way. {@link #get}, {@link #getRecent} and {@link #prune}
+ * query on the calling thread and must not be called from the main thread.
+ */
+public final class WeatherDatabase {
+
+    public interface Callback {
+        void onRead(WeatherDataStore.StoredWeather stored);
+    }
+
+    private static final String TAG = "WeatherDatabase";
+
+    private static final String DATABASE_NAME = "weather.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_FORECASTS = "forecasts";
+    private static final String COLUMN_LOCATION_KEY = "location_key";
+    private static final String COLUMN_LABEL = "label";
+    private static final String COLUMN_FETCHED_AT = "fetched_at";
+    private static final String COLUMN_SCHEMA_VERSION = "schema_version";
+    private static final String COLUMN_PAYLOAD = "payload";
+
+    private static final long DEFAULT_RETENTION_MS = 7 * 24 * 60 * 60 * 1000L;
+    private static final long PRUNE_INTERVAL_MS = 60 * 60 * 1000L;
+
+    private static volatile WeatherDatabase instance;
+
+    private final Helper helper;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+
+    private boolean isFlushScheduled;
+    private long lastPrunedAtMillis;
+    private long retentionMillis = DEFAULT_RETENTION_MS;
+
+    private WeatherDatabase(Context context) {
+        this.helper = new Helper(context);
+    }
+
+    public static WeatherDatabase getInstance(Context context) {
+        WeatherDatabase result = instance;
+        if (result == null) {
+            synchronized (WeatherDatabase.class) {
+                result = instance;
+                if (result == null) {
+                    result = new WeatherDatabase(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized void setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = Math.max(0L, retentionMillis);
+    }
+
+    public void putAsync(String locationKey, WeatherData data) {
+        if (locationKey == null || data == null) {
+            return;
+        }
+        synchronized (this) {
+            pendingWrites.put(locationKey,
+                    new PendingWrite(locationKey, data, System.currentTimeMillis()));
+            if (isFlushScheduled) {
+                return;
+            }
+            isFlushScheduled = true;
+        }
+        executor.execute(this::flush);
+    }
+
+    public void getAsync(String locationKey, Callback callback) {
+        if (locationKey == null || callback == null) {
+            return;
+        }
+        executor.execute(() -> {
+            WeatherDataStore.StoredWeather stored = get(locationKey);
+            mainHandler.post(() -> callback.onRead(stored));
+        });
+    }
+
+    @WorkerThread
+    public WeatherDataStore.StoredWeather get(String locationKey) {
+        if (locationKey == null) {
+            return null;
+        }
+        synchronized (this) {
+            PendingWrite pending = pendingWrites.get(locationKey);
+            if (pending != null) {
+                return new WeatherDataStore.StoredWeather(pending.data(), pending.fetchedAtMillis());
+            }
+        }
+        try (Cursor cursor = helper.getReadableDatabase().query(
+                TABLE_FORECASTS,
+                new String[] {COLUMN_FETCHED_AT, COLUMN_PAYLOAD},
+                COLUMN_LOCATION_KEY + " = ? AND " + COLUMN_SCHEMA_VERSION + " = ?",
+                new String[] {locationKey, String.valueOf(WeatherDataCodec.SCHEMA_VERSION)},
+                null, null, null, "1")
+        ) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return decode(cursor.getBlob(1));
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Unable to read " + locationKey, e);
+            return null;
+        }
+    }
+
+    @WorkerThread
+    public List<WeatherDataStore.StoredWeather> getRecent(int limit) {
+        List<WeatherDataStore.StoredWeather> results = new ArrayList<>();
+        if (limit <= 0) {
+            return results;
+        }
+        try (Cursor cursor = helper.getReadableDatabase().query(
+                TABLE_FORECASTS,
+                new String[] {COLUMN_PAYLOAD},
+                COLUMN_SCHEMA_VERSION + " = ?",
+                new String[] {String.valueOf(WeatherDataCodec.SCHEMA_VERSION)},
+                null, null,
+                COLUMN_FETCHED_AT + " DESC",
+                String.valueOf(limit))
+        ) {
+            while (cursor.moveToNext()) {
+                WeatherDataStore.StoredWeather stored = decode(cursor.getBlob(0));
+                if (stored != null) {
+                    results.add(stored);
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Unable to read recent forecasts", e);
+        }
+        return results;
+    }
+
+    @WorkerThread
+    public int prune(long maxAgeMillis) {
+        long cutoff = System.currentTimeMillis() - Math.max(0L, maxAgeMillis);
+        try {
+            return helper.getWritableDatabase().delete(
+                    TABLE_FORECASTS,
+                    COLUMN_FETCHED_AT + " < ?",
+                    new String[] {String.valueOf(cutoff)});
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Unable to prune forecasts", e);
+            return 0;
+        }
+    }
+
+    private void flush() {
+
+        List<PendingWrite> batch;
+        long retention;
+        synchronized (this) {
+            batch = new ArrayList<>(pendingWrites.values());
+            isFlushScheduled = false;
+            retention = retentionMillis;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            SQLiteDatabase database = helper.getWritableDatabase();
+            database.beginTransaction();
+            try (SQLiteStatement insert = database.compileStatement(
+                    "INSERT OR REPLACE INTO " + TABLE_FORECASTS + " ("
+                            + COLUMN_LOCATION_KEY + ", "
+                            + COLUMN_LABEL + ", "
+                            + COLUMN_FETCHED_AT + ", "
+                            + COLUMN_SCHEMA_VERSION + ", "
+                            + COLUMN_PAYLOAD + ") VALUES (?, ?, ?, ?, ?)")
+            ) {
+                for (PendingWrite write : batch) {
+                    byte[] payload = encode(write.data(), write.fetchedAtMillis());
+                    if (payload == null) {
+                        continue;
+                    }
+                    insert.bindString(1, write.locationKey());
+                    insert.bindString(2, write.data().location());
+                    insert.bindLong(3, write.fetchedAtMillis());
+                    insert.bindLong(4, WeatherDataCodec.SCHEMA_VERSION);
+                    insert.bindBlob(5, payload);
+                    insert.executeInsert();
+                    insert.clearBindings();
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to write " + batch.size() + " forecasts", e);
+        }
+
+        synchronized (this) {
+            for (PendingWrite write : batch) {
+                pendingWrites.remove(write.locationKey(), write);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastPrunedAtMillis >= PRUNE_INTERVAL_MS) {
+            lastPrunedAtMillis = now;
+            prune(retention);
+        }
+    }
+
+    private static byte[] encode(WeatherData data, long fetchedAtMillis) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 * 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            WeatherDataCodec.write(out, data, fetchedAtMillis);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to encode forecast", e);
+            return null;
+        }
+    }
+
+    private static WeatherDataStore.StoredWeather decode(byte[] payload) {
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return WeatherDataCodec.read(
+                    new DataInputStream(new ByteArrayInputStream(payload)), true);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable forecast row", e);
+            return null;
+        }
+    }
+
+    private record PendingWrite(String locationKey, WeatherData data, long fetchedAtMillis) {}
+
+    private static final class Helper extends SQLiteOpenHelper {
+
+        Helper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            db.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_FORECASTS + " ("
+                    + COLUMN_LOCATION_KEY + " TEXT PRIMARY KEY NOT NULL, "
+                    + COLUMN_LABEL + " TEXT NOT NULL, "
+                    + COLUMN_FETCHED_AT + " INTEGER NOT NULL, "
+                    + COLUMN_SCHEMA_VERSION + " INTEGER NOT NULL, "
+                    + COLUMN_PAYLOAD + " BLOB NOT NULL)");
+            db.execSQL("CREATE INDEX index_forecasts_fetched_at ON "
+                    + TABLE_FORECASTS + " (" + COLUMN_FETCHED_AT + ")");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_FORECASTS);
+            onCreate(db);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.kegszool.weather;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.Locale;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs forecast work in separate priority lanes. Every lane has its own
+ * threads and bounded queue, so a user-initiated fetch never waits behind
+ * background refreshes or prefetches.
+ */
+public final class WeatherDispatcher {
+
+    public enum Priority {
+        FOREGROUND(2, 8, Process.THREAD_PRIORITY_DEFAULT),
+        BACKGROUND(3, 16, Process.THREAD_PRIORITY_BACKGROUND),
+        PREFETCH(1, 16, Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE);
+
+        private final int maxConcurrency;
+        private final int queueCapacity;
+        private final int threadPriority;
+
+        Priority(int maxConcurrency, int queueCapacity, int threadPriority) {
+            this.maxConcurrency = maxConcurrency;
+            this.queueCapacity = queueCapacity;
+            this.threadPriority = threadPriority;
+        }
+
+        boolean isHigherThan(Priority other) {
+            return ordinal() < other.ordinal();
+        }
+
+        int threadPriority() {
+            return threadPriority;
+        }
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+
+    private static final WeatherDispatcher INSTANCE = new WeatherDispatcher();
+
+    private final Lane[] lanes;
+
+    private WeatherDispatcher() {
+        Priority[] priorities = Priority.values();
+        lanes = new Lane[priorities.length];
+        for (Priority priority : priorities) {
+            lanes[priority.ordinal()] = new Lane(priority);
+        }
+    }
+
+    public static WeatherDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    public Future<?> submit(Priority priority, Runnable task) {
+        return lanes[priority.ordinal()].submit(task);
+    }
+
+    public LaneStats getStats(Priority priority) {
+        return lanes[priority.ordinal()].snapshot();
+    }
+
+    public record LaneStats(
+        Priority priority,
+        int queued,
+        int active,
+        long executedCount,
+        long totalQueueWaitMillis,
+        long maxQueueWaitMillis
+    ) {
+        public long averageQueueWaitMillis() {
+            return executedCount > 0 ? totalQueueWaitMillis / executedCount : 0L;
+        }
+    }
+
+    private static final class Lane {
+
+        private final Priority priority;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong executedCount = new AtomicLong();
+        private final AtomicLong totalQueueWaitMillis = new AtomicLong();
+        private final AtomicLong maxQueueWaitMillis = new AtomicLong();
+
+        Lane(Priority priority) {
+            this.priority = priority;
+            this.executor = new ThreadPoolExecutor(
+                    priority.maxConcurrency,
+                    priority.maxConcurrency,
+                    KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(priority.queueCapacity),
+                    new LaneThreadFactory(priority),
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        Future<?> submit(Runnable task) {
+            long enqueuedAt = SystemClock.elapsedRealtime();
+            return executor.submit(() -> {
+                recordQueueWait(SystemClock.elapsedRealtime() - enqueuedAt);
+                task.run();
+            });
+        }
+
+        LaneStats snapshot() {
+            return new LaneStats(
+                    priority,
+                    executor.getQueue().size(),
+                    executor.getActiveCount(),
+                    executedCount.get(),
+                    totalQueueWaitMillis.get(),
+                    maxQueueWaitMillis.get()
+            );
+        }
+
+        private void recordQueueWait(long waitMillis) {
+            executedCount.incrementAndGet();
+            totalQueueWaitMillis.addAndGet(waitMillis);
+            maxQueueWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        }
+    }
+
+    private static final class LaneThreadFactory implements ThreadFactory {
+
+        private final Priority priority;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        LaneThreadFactory(Priority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            String name = "weather-" + priority.name().toLowerCase(Locale.ROOT)
+                    + "-" + counter.incrementAndGet();
+            return new Thread(() -> {
+                Process.setThreadPriority(priority.threadPriority);
+                runnable.run();
+            }, name);
+        }
+    }
+}
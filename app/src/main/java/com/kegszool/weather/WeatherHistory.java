@@ -0,0 +1,498 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only history of observed weather per location. Points are kept
+ * in fixed-point primitive columns and sealed into delta/varint chunks
+ * once a chunk fills up; the unsealed tail lives in a small side file.
+ * Old points are downsampled by {@link #compact()}, which the periodic sync
+ * runs at most once a day.
+ */
+public final class WeatherHistory {
+
+    public interface Callback {
+        void onQueryFinished(Series series);
+    }
+
+    private static final String TAG = "WeatherHistory";
+
+    private static final String DIRECTORY_NAME = "weather_history";
+    private static final String CHUNKS_SUFFIX = ".chunks";
+    private static final String TAIL_SUFFIX = ".tail";
+
+    private static final String PREF_NAME = "weather_history";
+    private static final String KEY_COMPACTED_AT = "compactedAt";
+
+    private static final int CHUNK_SIZE = 512;
+    private static final long HOUR_SECONDS = 60 * 60L;
+    private static final long DAY_SECONDS = 24 * HOUR_SECONDS;
+    private static final long RAW_RETENTION_SECONDS = 90 * DAY_SECONDS;
+    private static final long DOWNSAMPLED_BUCKET_SECONDS = 6 * HOUR_SECONDS;
+    private static final long MAX_RETENTION_SECONDS = 10 * 365 * DAY_SECONDS;
+    private static final long COMPACTION_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
+    private static volatile WeatherHistory instance;
+
+    private final Context context;
+    private final File directory;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Series> tails = new HashMap<>();
+    private final Map<String, Long> lastTimestamps = new HashMap<>();
+
+    private WeatherHistory(Context context) {
+        this.context = context;
+        this.directory = new File(context.getFilesDir(), DIRECTORY_NAME);
+    }
+
+    public static WeatherHistory getInstance(Context context) {
+        WeatherHistory result = instance;
+        if (result == null) {
+            synchronized (WeatherHistory.class) {
+                result = instance;
+                if (result == null) {
+                    result = new WeatherHistory(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void appendAsync(WeatherData data) {
+        if (data == null || data.location() == null || data.location().isEmpty()) {
+            return;
+        }
+        for (WeatherData.HourlyForecast forecast : data.hourlyForecasts()) {
+            if (forecast.timestamp() > 0L && !Double.isNaN(forecast.temperature())) {
+                String locationKey = data.location();
+                executor.execute(() -> append(locationKey, forecast));
+                return;
+            }
+        }
+    }
+
+    public void queryAsync(
+        String locationKey,
+        long fromSeconds,
+        long toSeconds,
+        Callback callback
+    ) {
+        if (callback == null) {
+            return;
+        }
+        executor.execute(() -> {
+            Series series = query(locationKey, fromSeconds, toSeconds);
+            mainHandler.post(() -> callback.onQueryFinished(series));
+        });
+    }
+
+    public synchronized Series query(String locationKey, long fromSeconds, long toSeconds) {
+        Series result = new Series(64);
+        if (locationKey == null || fromSeconds > toSeconds) {
+            return result;
+        }
+        File chunks = getChunksFile(locationKey);
+        ByteBuffer sealed = map(chunks);
+        if (sealed != null) {
+            WeatherHistoryCodec.decodeAll(sealed, fromSeconds, toSeconds, result);
+        }
+        Series tail = getTail(locationKey);
+        for (int i = 0; i < tail.size; i++) {
+            long time = tail.timestamps[i];
+            if (time >= fromSeconds && time <= toSeconds) {
+                result.add(time, tail.temperatures[i], tail.pressures[i],
+                        tail.humidities[i], tail.windSpeeds[i]);
+            }
+        }
+        return result;
+    }
+
+    public void compactAsync() {
+        SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        if (now - prefs.getLong(KEY_COMPACTED_AT, 0L) < COMPACTION_INTERVAL_MS) {
+            return;
+        }
+        prefs.edit().putLong(KEY_COMPACTED_AT, now).apply();
+        executor.execute(this::compact);
+    }
+
+    public synchronized void compact() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(CHUNKS_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long nowSeconds = System.currentTimeMillis() / 1000L;
+        for (File file : files) {
+            String fileKey = file.getName().substring(
+                    0, file.getName().length() - CHUNKS_SUFFIX.length());
+            compact(fileKey, nowSeconds);
+        }
+    }
+
+    private synchronized void append(String locationKey, WeatherData.HourlyForecast forecast) {
+
+        long time = forecast.timestamp();
+        if (time <= getLastTimestamp(locationKey)) {
+            return;
+        }
+        Series tail = getTail(locationKey);
+        tail.add(
+                time,
+                (int) Math.round(forecast.temperature() * 10d),
+                forecast.pressure(),
+                forecast.humidity(),
+                (int) Math.round(forecast.windSpeed() * 10d)
+        );
+        lastTimestamps.put(locationKey, time);
+
+        if (tail.size >= CHUNK_SIZE) {
+            if (appendChunk(getChunksFile(locationKey), tail)) {
+                tail.clear();
+            }
+        }
+        writeTail(locationKey, tail);
+    }
+
+    private void compact(String fileKey, long nowSeconds) {
+
+        File chunksFile = new File(directory, fileKey + CHUNKS_SUFFIX);
+        File tailFile = new File(directory, fileKey + TAIL_SUFFIX);
+
+        Series all = new Series(CHUNK_SIZE);
+        readInto(chunksFile, all);
+        Series unsealed = new Series(CHUNK_SIZE);
+        readInto(tailFile, unsealed);
+        appendAfter(all, unsealed);
+        if (all.size == 0) {
+            return;
+        }
+
+        long rawCutoff = nowSeconds - RAW_RETENTION_SECONDS;
+        long dropCutoff = nowSeconds - MAX_RETENTION_SECONDS;
+        Series compacted = downsample(all, dropCutoff, rawCutoff);
+
+        int sealedCount = compacted.size - compacted.size % CHUNK_SIZE;
+        if (!writeChunks(chunksFile, compacted, sealedCount)) {
+            return;
+        }
+        Series tail = new Series(CHUNK_SIZE);
+        for (int i = sealedCount; i < compacted.size; i++) {
+            tail.add(compacted.timestamps[i], compacted.temperatures[i], compacted.pressures[i],
+                    compacted.humidities[i], compacted.windSpeeds[i]);
+        }
+        writeTailFile(tailFile, tail);
+        for (Map.Entry<String, Series> entry : tails.entrySet()) {
+            if (toFileKey(entry.getKey()).equals(fileKey)) {
+                entry.setValue(tail);
+            }
+        }
+    }
+
+    private static Series downsample(Series source, long dropCutoff, long rawCutoff) {
+
+        Series result = new Series(source.size);
+        int i = 0;
+        while (i < source.size && source.timestamps[i] < dropCutoff) {
+            i++;
+        }
+        while (i < source.size && source.timestamps[i] < rawCutoff) {
+            long bucket = source.timestamps[i] - source.timestamps[i] % DOWNSAMPLED_BUCKET_SECONDS;
+            long temperature = 0;
+            long pressure = 0;
+            long humidity = 0;
+            long windSpeed = 0;
+            int count = 0;
+            while (i < source.size
+                    && source.timestamps[i] < rawCutoff
+                    && source.timestamps[i] < bucket + DOWNSAMPLED_BUCKET_SECONDS) {
+                temperature += source.temperatures[i];
+                pressure += source.pressures[i];
+                humidity += source.humidities[i];
+                windSpeed += source.windSpeeds[i];
+                count++;
+                i++;
+            }
+            result.add(bucket,
+                    (int) (temperature / count),
+                    (int) (pressure / count),
+                    (int) (humidity / count),
+                    (int) (windSpeed / count));
+        }
+        for (; i < source.size; i++) {
+            result.add(source.timestamps[i], source.temperatures[i], source.pressures[i],
+                    source.humidities[i], source.windSpeeds[i]);
+        }
+        return result;
+    }
+
+    private long getLastTimestamp(String locationKey) {
+        Long cached = lastTimestamps.get(locationKey);
+        if (cached != null) {
+            return cached;
+        }
+        long last = Long.MIN_VALUE;
+        Series tail = getTail(locationKey);
+        if (tail.size > 0) {
+            last = tail.timestamps[tail.size - 1];
+        } else {
+            Series sealed = new Series(CHUNK_SIZE);
+            readInto(getChunksFile(locationKey), sealed);
+            if (sealed.size > 0) {
+                last = sealed.timestamps[sealed.size - 1];
+            }
+        }
+        lastTimestamps.put(locationKey, last);
+        return last;
+    }
+
+    private Series getTail(String locationKey) {
+        Series tail = tails.get(locationKey);
+        if (tail == null) {
+            Series stored = new Series(CHUNK_SIZE);
+            readInto(getTailFile(locationKey), stored);
+            tail = stored;
+            if (stored.size > 0) {
+                // A crash between sealing a chunk and rewriting the tail leaves its points in both.
+                ByteBuffer sealed = map(getChunksFile(locationKey));
+                long lastSealed = sealed != null
+                        ? WeatherHistoryCodec.lastTimestamp(sealed)
+                        : Long.MIN_VALUE;
+                if (stored.timestamps[0] <= lastSealed) {
+                    tail = new Series(CHUNK_SIZE);
+                    appendAfter(tail, stored, lastSealed);
+                }
+            }
+            tails.put(locationKey, tail);
+        }
+        return tail;
+    }
+
+    /** Adds the points of {@code source} that are newer than the last one in {@code target}. */
+    private static void appendAfter(Series target, Series source) {
+        appendAfter(target, source, target.size > 0
+                ? target.timestamps[target.size - 1]
+                : Long.MIN_VALUE);
+    }
+
+    private static void appendAfter(Series target, Series source, long afterSeconds) {
+        for (int i = 0; i < source.size; i++) {
+            if (source.timestamps[i] > afterSeconds) {
+                target.add(source.timestamps[i], source.temperatures[i], source.pressures[i],
+                        source.humidities[i], source.windSpeeds[i]);
+            }
+        }
+    }
+
+    private void readInto(File file, Series target) {
+        ByteBuffer buffer = map(file);
+        if (buffer != null) {
+            WeatherHistoryCodec.decodeAll(buffer, Long.MIN_VALUE, Long.MAX_VALUE, target);
+        }
+    }
+
+    private ByteBuffer map(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileInputStream stream = new AtomicFile(file).openRead();
+             FileChannel channel = stream.getChannel()
+        ) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to map " + file.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Seals {@code series} onto the end of {@code file}. The plain append is
+     * only used while the file ends on a whole chunk; after an interrupted
+     * append the readable points and the new chunk are rewritten atomically
+     * instead, so nothing is ever written behind a broken chunk.
+     */
+    private boolean appendChunk(File file, Series series) {
+        if (!ensureDirectory()) {
+            return false;
+        }
+        ByteBuffer existing = map(file);
+        if (existing != null && WeatherHistoryCodec.validLength(existing) != existing.limit()) {
+            Log.w(TAG, "Repairing damaged history file " + file.getName());
+            Series all = new Series(CHUNK_SIZE);
+            WeatherHistoryCodec.decodeAll(existing, Long.MIN_VALUE, Long.MAX_VALUE, all);
+            appendAfter(all, series);
+            return writeChunks(file, all, all.size);
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(WeatherHistoryCodec.encode(series, 0, series.size));
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append history chunk", e);
+            return false;
+        }
+    }
+
+    private boolean writeChunks(File target, Series series, int count) {
+        if (!ensureDirectory()) {
+            return false;
+        }
+        AtomicFile file = new AtomicFile(target);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            for (int from = 0; from < count; from += CHUNK_SIZE) {
+                stream.write(WeatherHistoryCodec.encode(
+                        series, from, Math.min(from + CHUNK_SIZE, count)));
+            }
+            file.finishWrite(stream);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to rewrite history", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+            return false;
+        }
+    }
+
+    private void writeTail(String locationKey, Series tail) {
+        writeTailFile(getTailFile(locationKey), tail);
+    }
+
+    private void writeTailFile(File target, Series tail) {
+        if (tail.size == 0) {
+            new AtomicFile(target).delete();
+            return;
+        }
+        if (!ensureDirectory()) {
+            return;
+        }
+        AtomicFile file = new AtomicFile(target);
+        FileOutputStream stream = null;
+        try {
+            stream = file.startWrite();
+            stream.write(WeatherHistoryCodec.encode(tail, 0, tail.size));
+            file.finishWrite(stream);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write history tail", e);
+            if (stream != null) {
+                file.failWrite(stream);
+            }
+        }
+    }
+
+    private boolean ensureDirectory() {
+        return directory.isDirectory() || directory.mkdirs();
+    }
+
+    private File getChunksFile(String locationKey) {
+        return new File(directory, toFileKey(locationKey) + CHUNKS_SUFFIX);
+    }
+
+    private File getTailFile(String locationKey) {
+        return new File(directory, toFileKey(locationKey) + TAIL_SUFFIX);
+    }
+
+    private static String toFileKey(String locationKey) {
+        String safeName = locationKey.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_");
+        return safeName + "_" + Integer.toHexString(locationKey.hashCode());
+    }
+
+    /**
+     * Points of one location in ascending time order. Values are stored in
+     * fixed point: temperature in tenths of a degree Celsius and wind speed
+     * in tenths of a meter per second.
+     */
+    public static final class Series {
+
+        long[] timestamps;
+        int[] temperatures;
+        int[] pressures;
+        int[] humidities;
+        int[] windSpeeds;
+        int size;
+
+        Series(int capacity) {
+            int initialCapacity = Math.max(1, capacity);
+            timestamps = new long[initialCapacity];
+            temperatures = new int[initialCapacity];
+            pressures = new int[initialCapacity];
+            humidities = new int[initialCapacity];
+            windSpeeds = new int[initialCapacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long timestampAt(int index) {
+            return timestamps[index];
+        }
+
+        public double temperatureAt(int index) {
+            return temperatures[index] / 10d;
+        }
+
+        public int pressureAt(int index) {
+            return pressures[index];
+        }
+
+        public int humidityAt(int index) {
+            return humidities[index];
+        }
+
+        public double windSpeedAt(int index) {
+            return windSpeeds[index] / 10d;
+        }
+
+        /** Index of the last point at or before {@code timeSeconds}, or -1. */
+        public int indexAtOrBefore(long timeSeconds) {
+            int index = Arrays.binarySearch(timestamps, 0, size, timeSeconds);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        void add(long timestamp, int temperature, int pressure, int humidity, int windSpeed) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                temperatures = Arrays.copyOf(temperatures, capacity);
+                pressures = Arrays.copyOf(pressures, capacity);
+                humidities = Arrays.copyOf(humidities, capacity);
+                windSpeeds = Arrays.copyOf(windSpeeds, capacity);
+            }
+            timestamps[size] = timestamp;
+            temperatures[size] = temperature;
+            pressures[size] = pressure;
+            humidities[size] = humidity;
+            windSpeeds[size] = windSpeed;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
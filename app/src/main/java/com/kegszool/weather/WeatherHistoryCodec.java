@@ -0,0 +1,260 @@
+package com.kegszool.weather;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Columnar chunk layout for {@link WeatherHistory}. Each column is stored
+ * as deltas from the previous point; timestamps as unsigned varints,
+ * measurements as zigzag varints. A fixed header carries the time range,
+ * so scans can skip a chunk without decoding it, and a CRC32 of the
+ * payload, so a chunk cut short by an interrupted write is never mistaken
+ * for data.
+ */
+final class WeatherHistoryCodec {
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    private static final int MAGIC = 0x57485332;
+    private static final int PAYLOAD_LENGTH_OFFSET = 24;
+    private static final int CHECKSUM_OFFSET = 28;
+    private static final int MAX_POINTS = 64 * 1024;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final int COLUMN_COUNT = 5;
+
+    private WeatherHistoryCodec() {}
+
+    static byte[] encode(WeatherHistory.Series series, int from, int to) {
+
+        int count = to - from;
+        ByteBuffer buffer = ByteBuffer.allocate(
+                HEADER_SIZE + count * COLUMN_COUNT * MAX_VARINT_BYTES);
+        buffer.putInt(MAGIC)
+                .putInt(count)
+                .putLong(series.timestamps[from])
+                .putLong(series.timestamps[to - 1])
+                .putInt(0)
+                .putInt(0);
+
+        int payloadStart = buffer.position();
+        long previousTime = series.timestamps[from];
+        for (int i = from; i < to; i++) {
+            writeVarint(buffer, series.timestamps[i] - previousTime);
+            previousTime = series.timestamps[i];
+        }
+        writeDeltas(buffer, series.temperatures, from, to);
+        writeDeltas(buffer, series.pressures, from, to);
+        writeDeltas(buffer, series.humidities, from, to);
+        writeDeltas(buffer, series.windSpeeds, from, to);
+
+        int end = buffer.position();
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), payloadStart, end - payloadStart);
+        buffer.putInt(PAYLOAD_LENGTH_OFFSET, end - payloadStart);
+        buffer.putInt(CHECKSUM_OFFSET, (int) checksum.getValue());
+
+        byte[] result = new byte[end];
+        buffer.rewind();
+        buffer.get(result);
+        return result;
+    }
+
+    /**
+     * Decodes every chunk in {@code buffer} and appends the points inside
+     * {@code [fromSeconds, toSeconds]} to {@code target}. A chunk that is
+     * cut short or damaged, as an interrupted append leaves it, is skipped
+     * and decoding resumes at the next chunk header after it.
+     */
+    static void decodeAll(
+        ByteBuffer buffer,
+        long fromSeconds,
+        long toSeconds,
+        WeatherHistory.Series target
+    ) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        while (limit - position >= HEADER_SIZE) {
+            int payloadEnd = chunkEnd(buffer, position);
+            if (payloadEnd < 0) {
+                position = nextMagic(buffer, position + 1);
+                continue;
+            }
+            long firstTime = buffer.getLong(position + 8);
+            long lastTime = buffer.getLong(position + 16);
+            boolean isInRange = lastTime >= fromSeconds && firstTime <= toSeconds;
+            // A chunk not followed by another header may be a partial one, so verify it.
+            if ((isInRange || !isChunkBoundary(buffer, payloadEnd))
+                    && !hasValidChecksum(buffer, position, payloadEnd)) {
+                position = nextMagic(buffer, position + 1);
+                continue;
+            }
+            if (isInRange) {
+                buffer.position(position + HEADER_SIZE);
+                if (!decodeChunk(buffer, buffer.getInt(position + 4), firstTime, lastTime,
+                        payloadEnd, fromSeconds, toSeconds, target)) {
+                    position = nextMagic(buffer, position + 1);
+                    continue;
+                }
+            }
+            position = payloadEnd;
+        }
+        buffer.position(limit);
+    }
+
+    /**
+     * Length of the leading run of intact chunks in {@code buffer}, read
+     * from its position. Anything after it is a partial or damaged chunk
+     * that must not be appended to.
+     */
+    static int validLength(ByteBuffer buffer) {
+        int start = buffer.position();
+        int position = start;
+        while (buffer.limit() - position >= HEADER_SIZE) {
+            int payloadEnd = chunkEnd(buffer, position);
+            if (payloadEnd < 0 || !hasValidChecksum(buffer, position, payloadEnd)) {
+                break;
+            }
+            position = payloadEnd;
+        }
+        return position - start;
+    }
+
+    /** Last timestamp of the leading run of whole chunks, or {@code Long.MIN_VALUE}. */
+    static long lastTimestamp(ByteBuffer buffer) {
+        long last = Long.MIN_VALUE;
+        int position = buffer.position();
+        while (buffer.limit() - position >= HEADER_SIZE) {
+            int payloadEnd = chunkEnd(buffer, position);
+            if (payloadEnd < 0 || !isChunkBoundary(buffer, payloadEnd)) {
+                break;
+            }
+            last = buffer.getLong(position + 16);
+            position = payloadEnd;
+        }
+        return last;
+    }
+
+    /** End of the chunk starting at {@code position}, or -1 unless its header is sane and it fits. */
+    private static int chunkEnd(ByteBuffer buffer, int position) {
+        if (buffer.getInt(position) != MAGIC) {
+            return -1;
+        }
+        int count = buffer.getInt(position + 4);
+        int payloadLength = buffer.getInt(position + PAYLOAD_LENGTH_OFFSET);
+        if (count <= 0 || count > MAX_POINTS || payloadLength < count * COLUMN_COUNT
+                || payloadLength > buffer.limit() - position - HEADER_SIZE) {
+            return -1;
+        }
+        return position + HEADER_SIZE + payloadLength;
+    }
+
+    private static boolean hasValidChecksum(ByteBuffer buffer, int position, int payloadEnd) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(payloadEnd);
+        payload.position(position + HEADER_SIZE);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        return (int) checksum.getValue() == buffer.getInt(position + CHECKSUM_OFFSET);
+    }
+
+    private static boolean isChunkBoundary(ByteBuffer buffer, int position) {
+        return buffer.limit() - position < 4 || buffer.getInt(position) == MAGIC;
+    }
+
+    private static int nextMagic(ByteBuffer buffer, int from) {
+        for (int i = from; i <= buffer.limit() - 4; i++) {
+            if (buffer.getInt(i) == MAGIC) {
+                return i;
+            }
+        }
+        return buffer.limit();
+    }
+
+    /** Adds the chunk's points in range, or nothing if its payload does not add up. */
+    private static boolean decodeChunk(
+        ByteBuffer buffer,
+        int count,
+        long firstTime,
+        long lastTime,
+        int payloadEnd,
+        long fromSeconds,
+        long toSeconds,
+        WeatherHistory.Series target
+    ) {
+        long[] times = new long[count];
+        int[] temperatures;
+        int[] pressures;
+        int[] humidities;
+        int[] windSpeeds;
+        try {
+            long time = firstTime;
+            for (int i = 0; i < count; i++) {
+                time += readVarint(buffer);
+                times[i] = time;
+            }
+            temperatures = readDeltas(buffer, count);
+            pressures = readDeltas(buffer, count);
+            humidities = readDeltas(buffer, count);
+            windSpeeds = readDeltas(buffer, count);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (buffer.position() != payloadEnd || times[count - 1] != lastTime) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (times[i] < fromSeconds || times[i] > toSeconds) {
+                continue;
+            }
+            target.add(times[i], temperatures[i], pressures[i], humidities[i], windSpeeds[i]);
+        }
+        return true;
+    }
+
+    private static void writeDeltas(ByteBuffer buffer, int[] values, int from, int to) {
+        int previous = 0;
+        for (int i = from; i < to; i++) {
+            writeVarint(buffer, zigzag(values[i] - previous));
+            previous = values[i];
+        }
+    }
+
+    private static int[] readDeltas(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += unzigzag(readVarint(buffer));
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    private static void writeVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+}
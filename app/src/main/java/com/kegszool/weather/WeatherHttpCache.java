@@ -0,0 +1,67 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.net.http.HttpResponseCache;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Disk-backed cache for forecast responses, shared by every
+ * {@link java.net.HttpURLConnection} in the process. Honors
+ * {@code Cache-Control}/{@code Expires}, revalidates stale entries with
+ * {@code If-None-Match}/{@code If-Modified-Since} and evicts least
+ * recently used entries once the size cap is reached.
+ */
+public final class WeatherHttpCache {
+
+    private static final String TAG = "WeatherHttpCache";
+    private static final String CACHE_DIR_NAME = "forecast_http";
+    private static final long MAX_CACHE_SIZE_BYTES = 2L * 1024 * 1024;
+
+    private WeatherHttpCache() {}
+
+    public static synchronized void install(Context context) {
+        if (context == null || HttpResponseCache.getInstalled() != null) {
+            return;
+        }
+        File cacheDir = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+        try {
+            HttpResponseCache.install(cacheDir, MAX_CACHE_SIZE_BYTES);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to install HTTP response cache", e);
+        }
+    }
+
+    public static void flush() {
+        HttpResponseCache cache = HttpResponseCache.getInstalled();
+        if (cache != null) {
+            cache.flush();
+        }
+    }
+
+    public static int getRequestCount() {
+        HttpResponseCache cache = HttpResponseCache.getInstalled();
+        return cache != null ? cache.getRequestCount() : 0;
+    }
+
+    public static int getHitCount() {
+        HttpResponseCache cache = HttpResponseCache.getInstalled();
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    public static int getMissCount() {
+        return Math.max(0, getRequestCount() - getHitCount());
+    }
+
+    public static int getNetworkCount() {
+        HttpResponseCache cache = HttpResponseCache.getInstalled();
+        return cache != null ? cache.getNetworkCount() : 0;
+    }
+
+    public static long getSizeBytes() {
+        HttpResponseCache cache = HttpResponseCache.getInstalled();
+        return cache != null ? cache.size() : 0L;
+    }
+}
@@ -0,0 +1,124 @@
+package com.kegszool.weather;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+
+/**
+ * Condition icons decoded at the size they are shown at. Decoding
+ * subsamples the source PNG and the results are kept in a small LRU
+ * that is dropped when the system reports memory pressure.
+ */
+final class WeatherIconCache {
+
+    private static final int MAX_CACHE_BYTES = 512 * 1024;
+
+    private static final LruCache<String, Bitmap> CACHE = new LruCache<>(MAX_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getAllocationByteCount();
+        }
+    };
+
+    private static volatile boolean isTrimCallbackRegistered;
+
+    private WeatherIconCache() {}
+
+    static Bitmap get(Context context, @DrawableRes int iconRes, int width, int height) {
+        if (context == null || iconRes == 0 || width <= 0 || height <= 0) {
+            return null;
+        }
+        registerTrimCallback(context.getApplicationContext());
+
+        String key = iconRes + ":" + width + "x" + height;
+        Bitmap cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Bitmap decoded = decode(context.getResources(), iconRes, width, height);
+        if (decoded != null) {
+            CACHE.put(key, decoded);
+        }
+        return decoded;
+    }
+
+    static void clear() {
+        CACHE.evictAll();
+    }
+
+    private static Bitmap decode(Resources resources, @DrawableRes int iconRes, int width, int height) {
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, iconRes, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        Bitmap sampled = BitmapFactory.decodeResource(resources, iconRes, options);
+        if (sampled == null || (sampled.getWidth() <= width && sampled.getHeight() <= height)) {
+            return sampled;
+        }
+
+        float scale = Math.min(
+                (float) width / sampled.getWidth(),
+                (float) height / sampled.getHeight());
+        Bitmap scaled = Bitmap.createScaledBitmap(
+                sampled,
+                Math.max(1, Math.round(sampled.getWidth() * scale)),
+                Math.max(1, Math.round(sampled.getHeight() * scale)),
+                true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+        return scaled;
+    }
+
+    private static int calculateInSampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= width && sourceHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static void registerTrimCallback(Context appContext) {
+        if (isTrimCallbackRegistered) {
+            return;
+        }
+        synchronized (WeatherIconCache.class) {
+            if (isTrimCallbackRegistered) {
+                return;
+            }
+            appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+                        clear();
+                    }
+                }
+
+                @Override
+                public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                    clear();
+                }
+
+                @Override
+                public void onLowMemory() {
+                    clear();
+                }
+            });
+            isTrimCallbackRegistered = true;
+        }
+    }
+}
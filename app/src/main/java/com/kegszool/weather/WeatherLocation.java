@@ -0,0 +1,25 @@
+package com.kegszool.weather;
+
+import android.text.TextUtils;
+
+public record WeatherLocation(
+    String city,
+    double latitude,
+    double longitude
+) {
+    public static WeatherLocation ofCity(String city) {
+        return new WeatherLocation(city, Double.NaN, Double.NaN);
+    }
+
+    public static WeatherLocation ofCoordinates(double latitude, double longitude) {
+        return new WeatherLocation(null, latitude, longitude);
+    }
+
+    public boolean isCity() {
+        return !TextUtils.isEmpty(city);
+    }
+
+    public boolean isValid() {
+        return isCity() || (!Double.isNaN(latitude) && !Double.isNaN(longitude));
+    }
+}
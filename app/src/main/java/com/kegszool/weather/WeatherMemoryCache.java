@@ -0,0 +1,89 @@
+package com.kegszool.weather;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public final class WeatherMemoryCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+    private static final long DEFAULT_TTL_MS = 10 * 60 * 1000L;
+
+    private static final WeatherMemoryCache INSTANCE =
+            new WeatherMemoryCache(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS);
+
+    private final Map<String, Entry> entries;
+    private final LongSupplier clock;
+    private long ttlMillis;
+
+    WeatherMemoryCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, SystemClock::elapsedRealtime);
+    }
+
+    WeatherMemoryCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(maxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static WeatherMemoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    public synchronized void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = Math.max(0L, ttlMillis);
+    }
+
+    public synchronized long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public synchronized Entry get(String key) {
+        if (key == null) {
+            return null;
+        }
+        return entries.get(key);
+    }
+
+    public synchronized void put(String key, WeatherData data) {
+        if (key == null || data == null) {
+            return;
+        }
+        entries.put(key, new Entry(data, clock.getAsLong(), System.currentTimeMillis()));
+    }
+
+    public synchronized void put(String key, WeatherData data, long ageMillis) {
+        if (key == null || data == null) {
+            return;
+        }
+        long age = Math.max(0L, ageMillis);
+        entries.put(key, new Entry(
+                data,
+                clock.getAsLong() - age,
+                System.currentTimeMillis() - age));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public boolean isFresh(Entry entry) {
+        if (entry == null) {
+            return false;
+        }
+        return clock.getAsLong() - entry.storedAtMillis() < getTtlMillis();
+    }
+
+    /**
+     * {@code storedAtMillis} is on the elapsed-realtime clock for TTL checks;
+     * {@code savedAtMillis} is the wall-clock time the data was fetched.
+     */
+    public record Entry(WeatherData data, long storedAtMillis, long savedAtMillis) {}
+}
@@ -5,9 +5,10 @@ import android.app.NotificationChannel;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Build;
+import android.service.notification.StatusBarNotification;
 import android.text.TextUtils;
 
 import androidx.annotation.DrawableRes;
@@ -17,11 +18,15 @@ import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 import androidx.core.app.TaskStackBuilder;
 
+import java.util.Objects;
+
 public final class WeatherNotificationManager {
 
     private static final String CHANNEL_ID = "weather_status_channel";
     private static final int NOTIFICATION_ID = 1002;
 
+    private static String lastPostedSignature;
+
     @RequiresPermission(Manifest.permission.POST_NOTIFICATIONS)
     public static void showWeatherNotification(Context context, WeatherData data) {
         if (context == null || data == null) {
@@ -31,9 +36,18 @@ public final class WeatherNotificationManager {
         NotificationManagerCompat notificationManager = NotificationManagerCompat.from(appContext);
         createChannelIfNeeded(appContext, notificationManager);
 
-        PendingIntent contentIntent = buildContentIntent(appContext);
         String title = resolveTitle(appContext, data.location());
         String content = buildContentText(data.temperature(), data.description());
+        @DrawableRes int iconRes = resolveConditionIcon(data.conditionId());
+
+        String signature = title + '\n' + content + '\n' + iconRes;
+        synchronized (WeatherNotificationManager.class) {
+            if (Objects.equals(signature, lastPostedSignature) && isShowing(appContext)) {
+                return;
+            }
+        }
+
+        PendingIntent contentIntent = buildContentIntent(appContext);
 
         NotificationCompat.Builder builder =
                 new NotificationCompat.Builder(appContext, CHANNEL_ID)
@@ -49,11 +63,14 @@ public final class WeatherNotificationManager {
                 .setPriority(NotificationCompat.PRIORITY_LOW)
                 .setStyle(new NotificationCompat.BigTextStyle().bigText(content));
 
-        Bitmap largeIcon = loadLargeIcon(appContext, data.conditionId());
+        Bitmap largeIcon = loadLargeIcon(appContext, iconRes);
         if (largeIcon != null) {
             builder.setLargeIcon(largeIcon);
         }
         notificationManager.notify(NOTIFICATION_ID, builder.build());
+        synchronized (WeatherNotificationManager.class) {
+            lastPostedSignature = signature;
+        }
     }
 
     public static void cancel(Context context) {
@@ -61,6 +78,27 @@ public final class WeatherNotificationManager {
             return;
         }
         NotificationManagerCompat.from(context.getApplicationContext()).cancel(NOTIFICATION_ID);
+        synchronized (WeatherNotificationManager.class) {
+            lastPostedSignature = null;
+        }
+    }
+
+    /**
+     * Ongoing notifications can still be swiped away since Android 14, so a
+     * matching signature only means something while the notification is up.
+     */
+    private static boolean isShowing(Context context) {
+        android.app.NotificationManager manager =
+                context.getSystemService(android.app.NotificationManager.class);
+        if (manager == null) {
+            return false;
+        }
+        for (StatusBarNotification notification : manager.getActiveNotifications()) {
+            if (notification.getId() == NOTIFICATION_ID) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static void createChannelIfNeeded(
@@ -103,7 +141,7 @@ public final class WeatherNotificationManager {
         return context.getString(R.string.app_name);
     }
 
-    private static String buildContentText(
+    static String buildContentText(
         @Nullable String temperatureRaw,
         @Nullable String descriptionRaw
     ) {
@@ -133,12 +171,16 @@ public final class WeatherNotificationManager {
         return "";
     }
 
-    private static Bitmap loadLargeIcon(Context context, int conditionId) {
-        @DrawableRes int iconRes = resolveConditionIcon(conditionId);
+    private static Bitmap loadLargeIcon(Context context, @DrawableRes int iconRes) {
         if (iconRes == 0) {
             return null;
         }
-        return BitmapFactory.decodeResource(context.getResources(), iconRes);
+        Resources resources = context.getResources();
+        return WeatherIconCache.get(
+                context,
+                iconRes,
+                resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width),
+                resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height));
     }
 
     @DrawableRes
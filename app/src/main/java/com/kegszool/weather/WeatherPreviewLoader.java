@@ -0,0 +1,160 @@
+package com.kegszool.weather;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads forecast previews for a moving map camera. Camera positions are
+ * debounced, snapped to a grid chosen by zoom level and answered from the
+ * shared cache when possible. At most {@link #MAX_OUTSTANDING} requests are
+ * on the wire; while they run, only the newest position waits and every
+ * older one is dropped unsent. Superseded requests that already started
+ * still fill the cache, so panning back is served without a fetch.
+ *
+ * <p>Must be used from the main thread.
+ */
+final class WeatherPreviewLoader {
+
+    interface Listener {
+        void onPreviewLoading();
+        void onPreviewLoaded(WeatherData data);
+        void onPreviewError(String message);
+    }
+
+    private static final String TAG = "WeatherPreviewLoader";
+    private static final long DEBOUNCE_MS = 400L;
+    private static final int MAX_OUTSTANDING = 2;
+    private static final float FINE_ZOOM = 11f;
+    private static final float DEFAULT_ZOOM = 7f;
+
+    private final WeatherRouter router;
+    private final Listener listener;
+    private final WeatherMemoryCache cache = WeatherMemoryCache.getInstance();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, WeatherService> outstanding = new HashMap<>();
+
+    private Runnable pendingDebounce;
+    private WeatherRouter.Endpoint waiting;
+    private String wantedKey;
+
+    WeatherPreviewLoader(WeatherRouter router, Listener listener) {
+        this.router = router;
+        this.listener = listener;
+    }
+
+    void request(double latitude, double longitude, float zoom) {
+        if (pendingDebounce != null) {
+            mainHandler.removeCallbacks(pendingDebounce);
+        }
+        pendingDebounce = () -> {
+            pendingDebounce = null;
+            load(latitude, longitude, gridFor(zoom));
+        };
+        mainHandler.postDelayed(pendingDebounce, DEBOUNCE_MS);
+    }
+
+    /** Drops the waiting position and detaches from every outstanding request. */
+    void cancel() {
+        if (pendingDebounce != null) {
+            mainHandler.removeCallbacks(pendingDebounce);
+            pendingDebounce = null;
+        }
+        waiting = null;
+        wantedKey = null;
+        for (WeatherService service : outstanding.values()) {
+            service.cancel();
+        }
+        outstanding.clear();
+    }
+
+    static CoordinateGrid gridFor(float zoom) {
+        if (zoom >= FINE_ZOOM) {
+            return CoordinateGrid.FINE;
+        }
+        return zoom >= DEFAULT_ZOOM ? CoordinateGrid.DEFAULT : CoordinateGrid.COARSE;
+    }
+
+    private void load(double latitude, double longitude, CoordinateGrid grid) {
+        WeatherRouter.Endpoint endpoint = router.resolve(
+                WeatherLocation.ofCoordinates(latitude, longitude), grid);
+        if (endpoint == null) {
+            return;
+        }
+        wantedKey = endpoint.cacheKey();
+
+        WeatherMemoryCache.Entry cached = cache.get(endpoint.cacheKey());
+        if (cached != null) {
+            listener.onPreviewLoaded(cached.data());
+            if (cache.isFresh(cached)) {
+                waiting = null;
+                return;
+            }
+        } else {
+            listener.onPreviewLoading();
+        }
+
+        if (outstanding.containsKey(endpoint.cacheKey())) {
+            waiting = null;
+        } else if (outstanding.size() >= MAX_OUTSTANDING) {
+            waiting = endpoint;
+        } else {
+            waiting = null;
+            start(endpoint);
+        }
+    }
+
+    private void start(WeatherRouter.Endpoint endpoint) {
+        String key = endpoint.cacheKey();
+        WeatherService service = new WeatherService(new WeatherService.Callback() {
+            @Override
+            public void onWeatherLoaded(WeatherData data) {
+                if (outstanding.remove(key) == null) {
+                    return;
+                }
+                router.remember(endpoint, data);
+                if (key.equals(wantedKey)) {
+                    listener.onPreviewLoaded(data);
+                }
+                startWaiting();
+            }
+
+            @Override
+            public void onCachedWeatherLoaded(WeatherData data, long savedAtMillis, boolean isFresh) {
+                if (outstanding.remove(key) == null) {
+                    return;
+                }
+                if (key.equals(wantedKey)) {
+                    listener.onPreviewLoaded(data);
+                }
+                startWaiting();
+            }
+
+            @Override
+            public void onError(String message) {
+                if (outstanding.remove(key) == null) {
+                    return;
+                }
+                if (key.equals(wantedKey)) {
+                    listener.onPreviewError(message);
+                } else {
+                    Log.w(TAG, "Superseded preview failed: " + message);
+                }
+                startWaiting();
+            }
+        });
+        outstanding.put(key, service);
+        service.execute(endpoint.url(), WeatherDispatcher.Priority.BACKGROUND);
+    }
+
+    private void startWaiting() {
+        WeatherRouter.Endpoint next = waiting;
+        if (next != null && outstanding.size() < MAX_OUTSTANDING) {
+            waiting = null;
+            start(next);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.kegszool.weather;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.function.LongSupplier;
+
+public final class WeatherPublisher {
+
+    private static volatile LongSupplier clock = System::currentTimeMillis;
+
+    private WeatherPublisher() {}
+
+    /** Wall clock used to stamp published snapshots. */
+    static void setClock(LongSupplier clock) {
+        if (clock != null) {
+            WeatherPublisher.clock = clock;
+        }
+    }
+
+    public static void publish(Context context, WeatherData data) {
+        if (context == null || data == null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        long savedAtMillis = clock.getAsLong();
+        LastWeatherStorage.save(appContext, data, savedAtMillis);
+        WeatherHistory.getInstance(appContext).appendAsync(data);
+        // The widget's hourly list reads the data store, so update only once it is written.
+        WeatherDataStore.saveAsync(appContext, data, savedAtMillis,
+                () -> WeatherWidgetProvider.requestUpdate(appContext));
+        if (canPostNotifications(appContext)) {
+            WeatherNotificationManager.showWeatherNotification(appContext, data);
+        }
+    }
+
+    private static boolean canPostNotifications(Context context) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU ||
+                ContextCompat.checkSelfPermission(
+                        context, Manifest.permission.POST_NOTIFICATIONS
+                ) == PackageManager.PERMISSION_GRANTED;
+    }
+}
@@ -5,6 +5,7 @@ import android.util.Log;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.List;
 import java.util.Locale;
 
 public final class WeatherRouter {
@@ -17,57 +18,287 @@ public final class WeatherRouter {
     private static final String ENDPOINT_FORMAT_FOR_COORDINATES =
             "https://api.openweathermap.org/data/2.5/forecast?lat=%.6f&lon=%.6f&appid=%s&units=metric%s";
 
+    private static final String CACHE_KEY_FORMAT_FOR_CITY = "city:%s%s";
+    private static final String CACHE_KEY_FORMAT_FOR_COORDINATES = "coord:%s%s";
+
+    private static final int DEFAULT_BATCH_CONCURRENCY = 3;
+
     private final String apiKey;
+    private final WeatherService.Callback callback;
     private final WeatherService service;
+    private final WeatherMemoryCache cache = WeatherMemoryCache.getInstance();
+
+    private WeatherDatabase database;
+    private CoordinateGrid coordinateGrid = CoordinateGrid.DEFAULT;
+    private String pendingCacheKey;
+    private boolean isBackgroundRefresh;
+    private int loadGeneration;
 
     public WeatherRouter(String apiKey, WeatherService.Callback callback) {
         this.apiKey = apiKey;
-        this.service = new WeatherService(callback);
+        this.callback = callback;
+        this.service = new WeatherService(new WeatherService.Callback() {
+            @Override
+            public void onWeatherLoaded(WeatherData data) {
+                cache.put(pendingCacheKey, data);
+                if (database != null) {
+                    database.putAsync(pendingCacheKey, data);
+                }
+                pendingCacheKey = null;
+                deliverData(data);
+            }
+
+            @Override
+            public void onCachedWeatherLoaded(WeatherData data, long savedAtMillis, boolean isFresh) {
+                // The service's last good copy: already cached and published when it was fetched.
+                pendingCacheKey = null;
+                if (isBackgroundRefresh) {
+                    Log.w(TAG, "Background refresh failed, keeping the cached copy");
+                } else {
+                    deliverCached(data, savedAtMillis, isFresh);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                pendingCacheKey = null;
+                if (isBackgroundRefresh) {
+                    Log.w(TAG, "Background refresh failed: " + message);
+                } else if (callback != null) {
+                    callback.onError(message);
+                }
+            }
+        });
     }
 
     public void requestWeatherByCity(String cityName) {
-        if (TextUtils.isEmpty(apiKey) || TextUtils.isEmpty(cityName)) {
+        if (TextUtils.isEmpty(cityName)) {
             return;
         }
-        try {
-            String encodedCity = URLEncoder.encode(cityName, "UTF-8");
-            String endpoint = String.format(
-                    Locale.US,
-                    ENDPOINT_FORMAT_FOR_CITY,
-                    encodedCity,
-                    apiKey,
-                    getApiLanguageQuery()
-            );
-            service.execute(endpoint);
-        } catch (UnsupportedEncodingException e) {
-            Log.e(TAG, "Unable to encode city name", e);
-        }
+        load(resolve(WeatherLocation.ofCity(cityName), coordinateGrid));
     }
 
     public void requestWeatherByCoordinates(double latitude, double longitude) {
-        if (TextUtils.isEmpty(apiKey)) {
+        requestWeatherByCoordinates(latitude, longitude, coordinateGrid);
+    }
+
+    public void requestWeatherByCoordinates(
+        double latitude,
+        double longitude,
+        CoordinateGrid grid
+    ) {
+        if (grid == null) {
             return;
         }
-        String endpoint = String.format(
+        load(resolve(WeatherLocation.ofCoordinates(latitude, longitude), grid));
+    }
+
+    public void requestWeather(WeatherLocation location) {
+        load(resolve(location, coordinateGrid));
+    }
+
+    public void refreshWeather(WeatherLocation location) {
+        Endpoint endpoint = resolve(location, coordinateGrid);
+        if (endpoint == null) {
+            if (callback != null) {
+                callback.onError("Invalid request");
+            }
+            return;
+        }
+        loadGeneration++;
+        pendingCacheKey = endpoint.cacheKey();
+        isBackgroundRefresh = false;
+        service.execute(endpoint.url(), WeatherDispatcher.Priority.BACKGROUND);
+    }
+
+    public WeatherBatch requestWeatherBatch(
+        List<WeatherLocation> locations,
+        WeatherBatch.Callback batchCallback
+    ) {
+        return requestWeatherBatch(locations, DEFAULT_BATCH_CONCURRENCY, batchCallback);
+    }
+
+    public WeatherBatch requestWeatherBatch(
+        List<WeatherLocation> locations,
+        int maxConcurrency,
+        WeatherBatch.Callback batchCallback
+    ) {
+        return requestWeatherBatch(
+                locations, maxConcurrency, WeatherDispatcher.Priority.BACKGROUND, batchCallback);
+    }
+
+    public WeatherBatch requestWeatherBatch(
+        List<WeatherLocation> locations,
+        int maxConcurrency,
+        WeatherDispatcher.Priority priority,
+        WeatherBatch.Callback batchCallback
+    ) {
+        WeatherBatch batch = new WeatherBatch(this, locations, maxConcurrency, priority, batchCallback);
+        batch.start();
+        return batch;
+    }
+
+    public void setCoordinateGrid(CoordinateGrid grid) {
+        if (grid != null) {
+            coordinateGrid = grid;
+        }
+    }
+
+    public void setPersistentCache(WeatherDatabase database) {
+        this.database = database;
+    }
+
+    public void setCacheTtlMillis(long ttlMillis) {
+        cache.setTtlMillis(ttlMillis);
+    }
+
+    public void cancel() {
+        loadGeneration++;
+        pendingCacheKey = null;
+        service.cancel();
+    }
+
+    Endpoint resolve(WeatherLocation location) {
+        return resolve(location, coordinateGrid);
+    }
+
+    Endpoint resolve(WeatherLocation location, CoordinateGrid grid) {
+        if (TextUtils.isEmpty(apiKey) || location == null || !location.isValid()) {
+            return null;
+        }
+        String languageQuery = getApiLanguageQuery();
+        if (location.isCity()) {
+            try {
+                String normalizedCity = normalizeCity(location.city());
+                String encodedCity = URLEncoder.encode(normalizedCity, "UTF-8");
+                String url = String.format(
+                        Locale.US,
+                        ENDPOINT_FORMAT_FOR_CITY,
+                        encodedCity,
+                        apiKey,
+                        languageQuery
+                );
+                return new Endpoint(url, cacheKeyFor(location, grid));
+            } catch (UnsupportedEncodingException e) {
+                Log.e(TAG, "Unable to encode city name", e);
+                return null;
+            }
+        }
+        CoordinateGrid.Cell cell = grid.snap(location.latitude(), location.longitude());
+        String url = String.format(
                 Locale.US,
                 ENDPOINT_FORMAT_FOR_COORDINATES,
-                latitude,
-                longitude,
+                cell.centerLatitude(),
+                cell.centerLongitude(),
                 apiKey,
-                getApiLanguageQuery()
+                languageQuery
         );
-        service.execute(endpoint);
+        return new Endpoint(url, cacheKeyFor(location, grid));
     }
 
-    public void cancel() {
-        service.cancel();
+    static String cacheKeyFor(WeatherLocation location, CoordinateGrid grid) {
+        if (location == null || !location.isValid() || grid == null) {
+            return null;
+        }
+        String languageQuery = getApiLanguageQuery();
+        if (location.isCity()) {
+            return String.format(
+                    Locale.US,
+                    CACHE_KEY_FORMAT_FOR_CITY,
+                    normalizeCity(location.city()),
+                    languageQuery
+            );
+        }
+        CoordinateGrid.Cell cell = grid.snap(location.latitude(), location.longitude());
+        return String.format(
+                Locale.US,
+                CACHE_KEY_FORMAT_FOR_COORDINATES,
+                cell.key(),
+                languageQuery
+        );
+    }
+
+    void remember(Endpoint endpoint, WeatherData data) {
+        cache.put(endpoint.cacheKey(), data);
+        if (database != null) {
+            database.putAsync(endpoint.cacheKey(), data);
+        }
+    }
+
+    private void load(Endpoint endpoint) {
+        if (endpoint == null) {
+            return;
+        }
+        WeatherMemoryCache.Entry cached = cache.get(endpoint.cacheKey());
+        if (cached != null) {
+            boolean isFresh = cache.isFresh(cached);
+            if (isFresh) {
+                cancel();
+            }
+            deliverCached(cached.data(), cached.savedAtMillis(), isFresh);
+            if (!isFresh) {
+                fetch(endpoint, true);
+            }
+            return;
+        }
+        if (database == null) {
+            fetch(endpoint, false);
+            return;
+        }
+        cancel();
+        int generation = loadGeneration;
+        database.getAsync(endpoint.cacheKey(), stored -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            if (stored == null) {
+                fetch(endpoint, false);
+                return;
+            }
+            long ageMillis = Math.max(0L, System.currentTimeMillis() - stored.savedAtMillis());
+            cache.put(endpoint.cacheKey(), stored.data(), ageMillis);
+            boolean isFresh = ageMillis < cache.getTtlMillis();
+            deliverCached(stored.data(), stored.savedAtMillis(), isFresh);
+            if (!isFresh) {
+                fetch(endpoint, true);
+            }
+        });
+    }
+
+    private void fetch(Endpoint endpoint, boolean isBackground) {
+        loadGeneration++;
+        pendingCacheKey = endpoint.cacheKey();
+        isBackgroundRefresh = isBackground;
+        service.execute(endpoint.url(), isBackground
+                ? WeatherDispatcher.Priority.BACKGROUND
+                : WeatherDispatcher.Priority.FOREGROUND);
     }
 
-    private String getApiLanguageQuery() {
+    private void deliverData(WeatherData data) {
+        if (callback != null) {
+            callback.onWeatherLoaded(data);
+        }
+    }
+
+    private void deliverCached(WeatherData data, long savedAtMillis, boolean isFresh) {
+        if (callback != null) {
+            callback.onCachedWeatherLoaded(data, savedAtMillis, isFresh);
+        }
+    }
+
+    private static String normalizeCity(String cityName) {
+        return cityName.trim()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String getApiLanguageQuery() {
         String language = Locale.getDefault().getLanguage();
         if ("ru".equalsIgnoreCase(language)) {
             return "&lang=ru";
         }
         return "";
     }
+
+    record Endpoint(String url, String cacheKey) {}
 }
@@ -0,0 +1,233 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Periodically refreshes the last viewed location while the app is in the
+ * background and publishes the result to storage, the widget and the
+ * status notification in one go.
+ */
+public final class WeatherSyncWorker extends Worker {
+
+    private static final String TAG = "WeatherSyncWorker";
+    private static final String UNIQUE_WORK_NAME = "weather_periodic_sync";
+    private static final String UNIQUE_IMMEDIATE_WORK_NAME = "weather_sync_now";
+    private static final long SYNC_INTERVAL_MINUTES = 60L;
+    private static final long BACKOFF_DELAY_MINUTES = 10L;
+    private static final long FETCH_TIMEOUT_SECONDS = 60L;
+
+    private static volatile String apiKey = BuildConfig.OPEN_WEATHER_API_KEY;
+
+    public WeatherSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    static void setApiKey(String apiKey) {
+        if (apiKey != null) {
+            WeatherSyncWorker.apiKey = apiKey;
+        }
+    }
+
+    public static void schedule(Context context) {
+        if (context == null) {
+            return;
+        }
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                WeatherSyncWorker.class,
+                SYNC_INTERVAL_MINUTES,
+                TimeUnit.MINUTES
+        )
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_MINUTES, TimeUnit.MINUTES)
+                .build();
+
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP,
+                request
+        );
+    }
+
+    public static void syncNow(Context context) {
+        if (context == null) {
+            return;
+        }
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(WeatherSyncWorker.class)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_IMMEDIATE_WORK_NAME,
+                ExistingWorkPolicy.REPLACE,
+                request
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+
+        Context context = getApplicationContext();
+        WeatherLocation location = LastWeatherStorage.readLocation(context);
+        List<WeatherLocation> widgetLocations = WeatherWidgetProvider.getPinnedLocations(context);
+        if (location == null && widgetLocations.isEmpty()) {
+            return Result.success();
+        }
+        WeatherHttpCache.install(context);
+
+        boolean hasFailures = false;
+        if (location != null) {
+            WeatherData.Result result = fetch(location);
+            if (result == null || !result.isSuccess()) {
+                Log.w(TAG, "Sync failed: " + (result != null ? result.getError() : "timed out"));
+                hasFailures = true;
+            } else if (result.isStale()) {
+                Log.w(TAG, "Sync failed, the service only had an old copy");
+                hasFailures = true;
+            } else {
+                WeatherPublisher.publish(context, result.getData());
+            }
+        }
+        if (!widgetLocations.isEmpty()) {
+            int failed = fetchAll(widgetLocations);
+            if (failed != 0) {
+                Log.w(TAG, "Widget sync failed for " + (failed < 0 ? "all" : failed) + " locations");
+                hasFailures = true;
+            }
+            WeatherWidgetProvider.requestUpdate(context);
+        }
+        WeatherHttpCache.flush();
+        WeatherHistory.getInstance(context).compactAsync();
+        return hasFailures ? Result.retry() : Result.success();
+    }
+
+    /** Returns the number of failed locations, or -1 if the batch timed out. */
+    private int fetchAll(List<WeatherLocation> locations) {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger failedCount = new AtomicInteger();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        WeatherDatabase database = WeatherDatabase.getInstance(getApplicationContext());
+
+        WeatherBatch[] batchHolder = new WeatherBatch[1];
+        mainHandler.post(() -> {
+            WeatherRouter router = new WeatherRouter(apiKey, null);
+            router.setPersistentCache(database);
+            batchHolder[0] = router.requestWeatherBatch(locations, new WeatherBatch.Callback() {
+                @Override
+                public void onItemLoaded(WeatherLocation location, WeatherData data, long elapsedMillis) {
+                }
+
+                @Override
+                public void onItemFailed(WeatherLocation location, String message, long elapsedMillis) {
+                    Log.w(TAG, "Widget location failed: " + message);
+                }
+
+                @Override
+                public void onBatchFinished(int succeeded, int failed, long elapsedMillis) {
+                    failedCount.set(failed);
+                    latch.countDown();
+                }
+            });
+        });
+
+        try {
+            if (!latch.await(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                mainHandler.post(() -> {
+                    if (batchHolder[0] != null) {
+                        batchHolder[0].cancel();
+                    }
+                });
+                return -1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        return failedCount.get();
+    }
+
+    private WeatherData.Result fetch(WeatherLocation location) {
+
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<WeatherData.Result> resultRef = new AtomicReference<>();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        WeatherDatabase database = WeatherDatabase.getInstance(getApplicationContext());
+
+        WeatherRouter[] routerHolder = new WeatherRouter[1];
+        mainHandler.post(() -> {
+            routerHolder[0] = new WeatherRouter(
+                    apiKey,
+                    new WeatherService.Callback() {
+                        @Override
+                        public void onWeatherLoaded(WeatherData data) {
+                            resultRef.set(WeatherData.Result.success(data));
+                            latch.countDown();
+                        }
+
+                        @Override
+                        public void onCachedWeatherLoaded(
+                            WeatherData data,
+                            long savedAtMillis,
+                            boolean isFresh
+                        ) {
+                            resultRef.set(WeatherData.Result.stale(data, savedAtMillis));
+                            latch.countDown();
+                        }
+
+                        @Override
+                        public void onError(String message) {
+                            resultRef.set(WeatherData.Result.error(message));
+                            latch.countDown();
+                        }
+                    });
+            routerHolder[0].setPersistentCache(database);
+            routerHolder[0].refreshWeather(location);
+        });
+
+        try {
+            if (!latch.await(FETCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                mainHandler.post(() -> {
+                    if (routerHolder[0] != null) {
+                        routerHolder[0].cancel();
+                    }
+                });
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return resultRef.get();
+    }
+}
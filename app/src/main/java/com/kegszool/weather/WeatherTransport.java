@@ -0,0 +1,35 @@
+package com.kegszool.weather;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface WeatherTransport {
+
+    Response get(String endpoint) throws IOException;
+
+    interface Response extends Closeable {
+
+        int code();
+
+        String header(String name);
+
+        /** Decoded response body, or {@code null} when the server sent none. */
+        InputStream body();
+
+        Timings timings();
+
+        default boolean isSuccessful() {
+            return code() >= 200 && code() < 300;
+        }
+    }
+
+    /**
+     * Per-request phase durations in milliseconds. {@code connectMillis}
+     * includes the TLS handshake and is near zero for a pooled connection.
+     */
+    record Timings(
+        long connectMillis,
+        long firstByteMillis
+    ) {}
+}
@@ -6,13 +6,41 @@ import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
+import android.util.Log;
+import android.util.SizeF;
+import android.util.SparseArray;
 import android.widget.RemoteViews;
 
 import androidx.annotation.DrawableRes;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class WeatherWidgetProvider extends AppWidgetProvider {
 
+    private static final String TAG = "WeatherWidgetProvider";
+
+    /** Broadcast receivers are killed after 10 s; leave room for finish(). */
+    private static final long UPDATE_DEADLINE_MS = 8_000L;
+
+    private static final int SMALL_MAX_WIDTH_DP = 180;
+    private static final int LARGE_MIN_HEIGHT_DP = 250;
+
+    private static final SizeF SMALL_SIZE = new SizeF(110f, 110f);
+    private static final SizeF MEDIUM_SIZE = new SizeF(180f, 110f);
+    private static final SizeF LARGE_SIZE = new SizeF(180f, 250f);
+
     private static final int[] DAY_LABEL_IDS = {
         R.id.widgetDay1Label, R.id.widgetDay2Label, R.id.widgetDay3Label, R.id.widgetDay4Label
     };
@@ -25,44 +53,218 @@ public class WeatherWidgetProvider extends AppWidgetProvider {
         R.id.widgetDay1Icon, R.id.widgetDay2Icon, R.id.widgetDay3Icon, R.id.widgetDay4Icon
     };
 
+    private static final SparseArray<Content> RENDERED = new SparseArray<>();
+    private static final ExecutorService UPDATER = Executors.newSingleThreadExecutor();
+
+    private static volatile long lastPassMillis;
+    private static volatile long maxPassMillis;
+
     @Override
     public void onUpdate(
         Context context,
         AppWidgetManager appWidgetManager,
         int[] appWidgetIds
     ) {
-        for (int appWidgetId : appWidgetIds) {
-            updateAppWidget(context, appWidgetManager, appWidgetId);
+        Context appContext = context.getApplicationContext();
+        PendingResult pendingResult = goAsync();
+        long deadline = SystemClock.uptimeMillis() + UPDATE_DEADLINE_MS;
+        UPDATER.execute(() -> {
+            try {
+                updateAppWidgets(appContext, appWidgetManager, appWidgetIds, deadline);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        synchronized (RENDERED) {
+            for (int appWidgetId : appWidgetIds) {
+                RENDERED.remove(appWidgetId);
+            }
+        }
+        WidgetLocationStore.remove(context, appWidgetIds);
+    }
+
+    @Override
+    public void onAppWidgetOptionsChanged(
+        Context context,
+        AppWidgetManager appWidgetManager,
+        int appWidgetId,
+        Bundle newOptions
+    ) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            return;
+        }
+        synchronized (RENDERED) {
+            RENDERED.remove(appWidgetId);
         }
+        onUpdate(context, appWidgetManager, new int[] {appWidgetId});
     }
 
     static void requestUpdate(Context context) {
         if (context == null) { return; }
 
         AppWidgetManager manager = AppWidgetManager.getInstance(context);
-        ComponentName componentName = new ComponentName(context, WeatherWidgetProvider.class);
-        int[] widgetIds = manager.getAppWidgetIds(componentName);
+        int[] widgetIds = getWidgetIds(context, manager);
         if (widgetIds == null) { return; }
 
+        Context appContext = context.getApplicationContext();
+        long deadline = SystemClock.uptimeMillis() + UPDATE_DEADLINE_MS;
+        UPDATER.execute(() -> updateAppWidgets(appContext, manager, widgetIds, deadline));
+    }
+
+    /** Distinct locations pinned by widget instances, one entry per cache key. */
+    static List<WeatherLocation> getPinnedLocations(Context context) {
+        Map<String, WeatherLocation> locations = new LinkedHashMap<>();
+        int[] widgetIds = getWidgetIds(context, AppWidgetManager.getInstance(context));
+        if (widgetIds == null) {
+            return new ArrayList<>();
+        }
         for (int widgetId : widgetIds) {
-            updateAppWidget(context, manager, widgetId);
+            WeatherLocation location = WidgetLocationStore.read(context, widgetId);
+            String key = WeatherRouter.cacheKeyFor(location, CoordinateGrid.DEFAULT);
+            if (key != null) {
+                locations.putIfAbsent(key, location);
+            }
         }
+        return new ArrayList<>(locations.values());
+    }
+
+    static long getLastPassMillis() {
+        return lastPassMillis;
+    }
+
+    static long getMaxPassMillis() {
+        return maxPassMillis;
     }
 
-    private static void updateAppWidget(
+    static void updateAppWidgets(
         Context context,
         AppWidgetManager appWidgetManager,
-        int appWidgetId
+        int[] appWidgetIds,
+        long deadline
     ) {
-        LastWeatherStorage.WeatherSnapshot snapshot = LastWeatherStorage.read(context);
-        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_weather);
+        if (appWidgetIds == null || appWidgetIds.length == 0) { return; }
+
+        long startedAt = SystemClock.uptimeMillis();
+        int updated = 0;
+        Map<String, Content> contentByLocation = new HashMap<>();
+        Map<Content, RemoteViews> fullViewsByContent = new HashMap<>();
+        int[] dataChangedIds = new int[appWidgetIds.length];
+        int dataChangedCount = 0;
+
+        synchronized (RENDERED) {
+            for (int appWidgetId : appWidgetIds) {
+                if (SystemClock.uptimeMillis() >= deadline) {
+                    Log.w(TAG, "Update deadline reached after " + updated + " widgets");
+                    break;
+                }
+                WeatherLocation pinned = WidgetLocationStore.read(context, appWidgetId);
+                String locationKey = WeatherRouter.cacheKeyFor(pinned, CoordinateGrid.DEFAULT);
+                Content content = contentByLocation.computeIfAbsent(
+                        locationKey != null ? locationKey : "",
+                        key -> {
+                            Content loaded = loadContent(context, pinned, key);
+                            WidgetHourlyRows.onDataVersion(key, loaded.savedAtMillis());
+                            return loaded;
+                        });
+
+                Content previous = RENDERED.get(appWidgetId);
+                if (content.equals(previous)) {
+                    continue;
+                }
+                RENDERED.put(appWidgetId, content);
+
+                if (previous == null || !previous.locationKey().equals(content.locationKey())) {
+                    RemoteViews fullViews = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                            ? fullViewsByContent.computeIfAbsent(
+                                    content, key -> buildResponsiveViews(context, key))
+                            : buildViews(context, content, chooseLayout(appWidgetManager, appWidgetId));
+                    appWidgetManager.updateAppWidget(appWidgetId, fullViews);
+                    updated++;
+                    continue;
+                }
+                if (previous.savedAtMillis() != content.savedAtMillis()) {
+                    dataChangedIds[dataChangedCount++] = appWidgetId;
+                }
+                if (!content.hasSameView(previous)) {
+                    appWidgetManager.partiallyUpdateAppWidget(
+                            appWidgetId, buildChangedViews(context, previous, content));
+                    updated++;
+                }
+            }
+        }
+        if (dataChangedCount > 0) {
+            appWidgetManager.notifyAppWidgetViewDataChanged(
+                    Arrays.copyOf(dataChangedIds, dataChangedCount), R.id.widgetHourlyList);
+        }
+
+        long elapsed = SystemClock.uptimeMillis() - startedAt;
+        lastPassMillis = elapsed;
+        maxPassMillis = Math.max(maxPassMillis, elapsed);
+        Log.d(TAG, "Updated " + updated + "/" + appWidgetIds.length + " widgets in " + elapsed + " ms");
+    }
+
+    private static int[] getWidgetIds(Context context, AppWidgetManager manager) {
+        return manager.getAppWidgetIds(new ComponentName(context, WeatherWidgetProvider.class));
+    }
 
-        String cityLabel = !TextUtils.isEmpty(snapshot.city())
-                ? snapshot.city()
-                : context.getString(R.string.city_placeholder);
-        views.setTextViewText(R.id.widgetCity, cityLabel);
+    private static Content loadContent(
+        Context context,
+        WeatherLocation pinned,
+        String locationKey
+    ) {
+        if (locationKey.isEmpty()) {
+            return Content.from(context, locationKey, LastWeatherStorage.read(context));
+        }
+        WeatherDataStore.StoredWeather stored =
+                WeatherDatabase.getInstance(context).get(locationKey);
+        if (stored != null) {
+            return Content.from(context, locationKey,
+                    LastWeatherStorage.toSnapshot(stored.data(), stored.savedAtMillis()));
+        }
+        String city = pinned.isCity() ? pinned.city() : "";
+        return Content.from(context, locationKey, new LastWeatherStorage.WeatherSnapshot(
+                city, "", 0, null, 0L));
+    }
+
+    private static int chooseLayout(AppWidgetManager manager, int appWidgetId) {
+        Bundle options = manager.getAppWidgetOptions(appWidgetId);
+        int minWidth = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
+        int maxHeight = options.getInt(AppWidgetManager.OPTION_APPWIDGET_MAX_HEIGHT);
+        if (minWidth > 0 && minWidth < SMALL_MAX_WIDTH_DP) {
+            return R.layout.widget_weather_small;
+        } else if (maxHeight >= LARGE_MIN_HEIGHT_DP) {
+            return R.layout.widget_weather_large;
+        }
+        return R.layout.widget_weather;
+    }
+
+    private static RemoteViews buildResponsiveViews(Context context, Content content) {
+        Map<SizeF, RemoteViews> viewsBySize = new HashMap<>();
+        viewsBySize.put(SMALL_SIZE, buildViews(context, content, R.layout.widget_weather_small));
+        viewsBySize.put(MEDIUM_SIZE, buildViews(context, content, R.layout.widget_weather));
+        viewsBySize.put(LARGE_SIZE, buildViews(context, content, R.layout.widget_weather_large));
+        return new RemoteViews(viewsBySize);
+    }
 
-        bindForecasts(views, snapshot);
+    private static RemoteViews buildViews(Context context, Content content, int layoutId) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), layoutId);
+        views.setTextViewText(R.id.widgetCity, content.city());
+        int dayCount = layoutId == R.layout.widget_weather_small ? 1 : DAY_LABEL_IDS.length;
+        for (int i = 0; i < dayCount; i++) {
+            bindDay(views, i, content.days().get(i));
+        }
+
+        if (layoutId == R.layout.widget_weather_large) {
+            Intent adapterIntent = new Intent(context, WeatherWidgetService.class)
+                    .putExtra(WeatherWidgetService.EXTRA_LOCATION_KEY, content.locationKey());
+            adapterIntent.setData(Uri.parse(adapterIntent.toUri(Intent.URI_INTENT_SCHEME)));
+            views.setRemoteAdapter(R.id.widgetHourlyList, adapterIntent);
+            views.setEmptyView(R.id.widgetHourlyList, R.id.widgetHourlyEmpty);
+        }
 
         PendingIntent openApp = PendingIntent.getActivity(
                 context,
@@ -71,40 +273,38 @@ public class WeatherWidgetProvider extends AppWidgetProvider {
                 PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT
         );
         views.setOnClickPendingIntent(R.id.widgetContainer, openApp);
-        appWidgetManager.updateAppWidget(appWidgetId, views);
+        return views;
     }
 
-    private static void bindForecasts(
-        RemoteViews views,
-        LastWeatherStorage.WeatherSnapshot snapshot
+    private static RemoteViews buildChangedViews(
+        Context context,
+        Content previous,
+        Content content
     ) {
-        if (views == null) { return; }
-
-        LastWeatherStorage.ForecastSnapshot[] forecasts = snapshot.forecasts();
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_weather);
+        if (!content.city().equals(previous.city())) {
+            views.setTextViewText(R.id.widgetCity, content.city());
+        }
         for (int i = 0; i < DAY_LABEL_IDS.length; i++) {
-
-            String label = "—";
-            String temp = "—";
-            int icon = resolveIcon(0);
-
-            if (forecasts != null && i < forecasts.length && forecasts[i] != null) {
-
-                label = !TextUtils.isEmpty(forecasts[i].dayLabel())
-                        ? forecasts[i].dayLabel()
-                        : label;
-                temp = !TextUtils.isEmpty(forecasts[i].temperature())
-                        ? formatTemperature(forecasts[i].temperature())
-                        : temp;
-
-                icon = resolveIcon(forecasts[i].conditionId());
-            } else if (i == 0) {
-                temp = formatTemperature(snapshot.temperature());
-                icon = resolveIcon(snapshot.conditionId());
+            DayCell before = previous.days().get(i);
+            DayCell after = content.days().get(i);
+            if (!after.label().equals(before.label())) {
+                views.setTextViewText(DAY_LABEL_IDS[i], after.label());
+            }
+            if (!after.temperature().equals(before.temperature())) {
+                views.setTextViewText(DAY_TEMP_IDS[i], after.temperature());
+            }
+            if (after.icon() != before.icon()) {
+                views.setImageViewResource(DAY_ICON_IDS[i], after.icon());
             }
-            views.setTextViewText(DAY_LABEL_IDS[i], label);
-            views.setTextViewText(DAY_TEMP_IDS[i], temp);
-            views.setImageViewResource(DAY_ICON_IDS[i], icon);
         }
+        return views;
+    }
+
+    private static void bindDay(RemoteViews views, int index, DayCell day) {
+        views.setTextViewText(DAY_LABEL_IDS[index], day.label());
+        views.setTextViewText(DAY_TEMP_IDS[index], day.temperature());
+        views.setImageViewResource(DAY_ICON_IDS[index], day.icon());
     }
 
     private static String formatTemperature(String rawTemp) {
@@ -119,7 +319,7 @@ public class WeatherWidgetProvider extends AppWidgetProvider {
     }
 
     @DrawableRes
-    private static int resolveIcon(int conditionId) {
+    static int resolveIcon(int conditionId) {
         if (conditionId >= 200 && conditionId < 300) {
             return R.drawable.wth_thunderstorm;
         } else if (conditionId >= 300 && conditionId < 400) {
@@ -137,4 +337,56 @@ public class WeatherWidgetProvider extends AppWidgetProvider {
         }
         return R.drawable.wth_clouds;
     }
-}
\ No newline at end of file
+
+    /** Everything a widget shows, rendered once per update pass and compared per widget. */
+    record Content(
+        String locationKey,
+        long savedAtMillis,
+        String city,
+        List<DayCell> days
+    ) {
+
+        static Content from(
+            Context context,
+            String locationKey,
+            LastWeatherStorage.WeatherSnapshot snapshot
+        ) {
+
+            String city = !TextUtils.isEmpty(snapshot.city())
+                    ? snapshot.city()
+                    : context.getString(R.string.city_placeholder);
+
+            LastWeatherStorage.ForecastSnapshot[] forecasts = snapshot.forecasts();
+            List<DayCell> days = new ArrayList<>(DAY_LABEL_IDS.length);
+            for (int i = 0; i < DAY_LABEL_IDS.length; i++) {
+
+                String label = "—";
+                String temp = "—";
+                int icon = resolveIcon(0);
+
+                if (forecasts != null && i < forecasts.length && forecasts[i] != null) {
+
+                    label = !TextUtils.isEmpty(forecasts[i].dayLabel())
+                            ? forecasts[i].dayLabel()
+                            : label;
+                    temp = !TextUtils.isEmpty(forecasts[i].temperature())
+                            ? formatTemperature(forecasts[i].temperature())
+                            : temp;
+
+                    icon = resolveIcon(forecasts[i].conditionId());
+                } else if (i == 0) {
+                    temp = formatTemperature(snapshot.temperature());
+                    icon = resolveIcon(snapshot.conditionId());
+                }
+                days.add(new DayCell(label, temp, icon));
+            }
+            return new Content(locationKey, snapshot.savedAtMillis(), city, List.copyOf(days));
+        }
+
+        boolean hasSameView(Content other) {
+            return other != null && city.equals(other.city) && days.equals(other.days);
+        }
+    }
+
+    record DayCell(String label, String temperature, @DrawableRes int icon) {}
+}
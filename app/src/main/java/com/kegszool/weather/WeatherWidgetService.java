@@ -0,0 +1,80 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
+
+public class WeatherWidgetService extends RemoteViewsService {
+
+    static final String EXTRA_LOCATION_KEY = "extra_location_key";
+
+    @Override
+    public RemoteViewsFactory onGetViewFactory(Intent intent) {
+        return new HourlyFactory(getApplicationContext(), intent.getStringExtra(EXTRA_LOCATION_KEY));
+    }
+
+    private static final class HourlyFactory implements RemoteViewsFactory {
+
+        private final Context context;
+        private final String locationKey;
+        private WidgetHourlyRows.Row[] rows = new WidgetHourlyRows.Row[0];
+
+        HourlyFactory(Context context, String locationKey) {
+            this.context = context;
+            this.locationKey = locationKey;
+        }
+
+        @Override
+        public void onCreate() {}
+
+        @Override
+        public void onDataSetChanged() {
+            rows = WidgetHourlyRows.get(context, locationKey);
+        }
+
+        @Override
+        public void onDestroy() {
+            rows = new WidgetHourlyRows.Row[0];
+        }
+
+        @Override
+        public int getCount() {
+            return rows.length;
+        }
+
+        @Override
+        public RemoteViews getViewAt(int position) {
+            RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_hourly_item);
+            if (position < 0 || position >= rows.length) {
+                return views;
+            }
+            WidgetHourlyRows.Row row = rows[position];
+            views.setTextViewText(R.id.widgetHourlyTime, row.time());
+            views.setTextViewText(R.id.widgetHourlyTemp, row.temperature());
+            views.setTextViewText(R.id.widgetHourlyDescription, row.description());
+            views.setImageViewResource(R.id.widgetHourlyIcon, row.icon());
+            return views;
+        }
+
+        @Override
+        public RemoteViews getLoadingView() {
+            return null;
+        }
+
+        @Override
+        public int getViewTypeCount() {
+            return 1;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position < rows.length ? rows[position].timestamp() : position;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+    }
+}
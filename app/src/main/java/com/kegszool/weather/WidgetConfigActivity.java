@@ -0,0 +1,118 @@
+package com.kegszool.weather;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Intent;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+
+/**
+ * Lets each widget instance pin its own city or map point. Widgets left
+ * unpinned keep following the last location viewed in the app.
+ */
+public class WidgetConfigActivity extends AppCompatActivity {
+
+    private static final int REQUEST_CODE_MAP_PICK = 1001;
+
+    private int appWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
+    private EditText cityInput;
+    private TextView selectionView;
+    private WeatherLocation pickedLocation;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setResult(RESULT_CANCELED);
+
+        Bundle extras = getIntent().getExtras();
+        if (extras != null) {
+            appWidgetId = extras.getInt(
+                    AppWidgetManager.EXTRA_APPWIDGET_ID,
+                    AppWidgetManager.INVALID_APPWIDGET_ID);
+        }
+        if (appWidgetId == AppWidgetManager.INVALID_APPWIDGET_ID) {
+            finish();
+            return;
+        }
+
+        setContentView(R.layout.activity_widget_config);
+        cityInput = findViewById(R.id.widgetConfigCity);
+        selectionView = findViewById(R.id.widgetConfigSelection);
+        Button pickOnMapButton = findViewById(R.id.widgetConfigPickOnMap);
+        Button followAppButton = findViewById(R.id.widgetConfigFollowApp);
+        Button saveButton = findViewById(R.id.widgetConfigSave);
+
+        WeatherLocation current = WidgetLocationStore.read(this, appWidgetId);
+        if (current != null && current.isCity()) {
+            cityInput.setText(current.city());
+        } else if (current != null) {
+            showPickedLocation(current);
+        }
+
+        pickOnMapButton.setOnClickListener(v -> startActivityForResult(
+                new Intent(this, MapPickerActivity.class), REQUEST_CODE_MAP_PICK));
+        followAppButton.setOnClickListener(v -> {
+            WidgetLocationStore.remove(this, new int[] {appWidgetId});
+            complete();
+        });
+        saveButton.setOnClickListener(v -> save());
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == REQUEST_CODE_MAP_PICK &&
+                resultCode == RESULT_OK &&
+                data != null
+        ) {
+            double lat = data.getDoubleExtra(MapPickerActivity.EXTRA_LATITUDE, Double.NaN);
+            double lng = data.getDoubleExtra(MapPickerActivity.EXTRA_LONGITUDE, Double.NaN);
+            WeatherLocation location = WeatherLocation.ofCoordinates(lat, lng);
+            if (location.isValid()) {
+                cityInput.setText("");
+                showPickedLocation(location);
+            }
+        }
+    }
+
+    private void save() {
+        String city = cityInput.getText() != null
+                ? cityInput.getText().toString().trim()
+                : "";
+        WeatherLocation location = !TextUtils.isEmpty(city)
+                ? WeatherLocation.ofCity(city)
+                : pickedLocation;
+        if (location == null || !location.isValid()) {
+            Toast.makeText(this, R.string.map_no_selection, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        WidgetLocationStore.save(this, appWidgetId, location);
+        WeatherSyncWorker.syncNow(this);
+        complete();
+    }
+
+    private void complete() {
+        WeatherWidgetProvider.requestUpdate(this);
+        Intent result = new Intent();
+        result.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+        setResult(RESULT_OK, result);
+        finish();
+    }
+
+    private void showPickedLocation(WeatherLocation location) {
+        pickedLocation = location;
+        selectionView.setText(getString(
+                R.string.map_selection_label,
+                String.format(Locale.getDefault(), "%.4f, %.4f",
+                        location.latitude(), location.longitude())));
+        selectionView.setVisibility(View.VISIBLE);
+    }
+}
@@ -0,0 +1,92 @@
+package com.kegszool.weather;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hourly rows for the scrollable widget list, formatted once per data
+ * version and shared by every widget showing the same location. The list
+ * factory only indexes into the array. Rows remember the save time of the
+ * data they were built from, so they are reused only while it matches the
+ * version the widget header shows.
+ */
+final class WidgetHourlyRows {
+
+    static final int MAX_ROWS = 40;
+
+    private static final Row[] EMPTY = new Row[0];
+    private static final Map<String, VersionedRows> ROWS = new ConcurrentHashMap<>();
+    private static final Map<String, Long> VERSIONS = new ConcurrentHashMap<>();
+
+    @SuppressLint("ConstantLocale")
+    private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("EEE HH:mm", Locale.getDefault()));
+
+    private WidgetHourlyRows() {}
+
+    static Row[] get(Context context, String locationKey) {
+        String key = locationKey != null ? locationKey : "";
+        Long expected = VERSIONS.get(key);
+        VersionedRows cached = ROWS.get(key);
+        if (cached != null && (expected == null || cached.savedAtMillis() == expected)) {
+            return cached.rows();
+        }
+        WeatherDataStore.StoredWeather stored = load(context, key);
+        VersionedRows built = stored != null
+                ? new VersionedRows(build(stored.data()), stored.savedAtMillis())
+                : new VersionedRows(EMPTY, 0L);
+        ROWS.put(key, built);
+        return built.rows();
+    }
+
+    /** Records the save time the widget is showing for a location. */
+    static void onDataVersion(String locationKey, long savedAtMillis) {
+        VERSIONS.put(locationKey != null ? locationKey : "", savedAtMillis);
+    }
+
+    private static WeatherDataStore.StoredWeather load(Context context, String locationKey) {
+        return locationKey.isEmpty()
+                ? WeatherDataStore.read(context)
+                : WeatherDatabase.getInstance(context).get(locationKey);
+    }
+
+    private static Row[] build(WeatherData data) {
+        if (data == null || data.hourlyForecasts().isEmpty()) {
+            return EMPTY;
+        }
+        List<WeatherData.HourlyForecast> hourly = data.hourlyForecasts();
+        Row[] rows = new Row[Math.min(MAX_ROWS, hourly.size())];
+        SimpleDateFormat format = TIME_FORMAT.get();
+        for (int i = 0; i < rows.length; i++) {
+            WeatherData.HourlyForecast forecast = hourly.get(i);
+            String temperature = !Double.isNaN(forecast.temperature())
+                    ? Math.round(forecast.temperature()) + "°"
+                    : "—";
+            rows[i] = new Row(
+                    forecast.timestamp(),
+                    format.format(new Date(forecast.timestamp() * 1000L)),
+                    temperature,
+                    forecast.description(),
+                    WeatherWidgetProvider.resolveIcon(forecast.conditionId())
+            );
+        }
+        return rows;
+    }
+
+    private record VersionedRows(Row[] rows, long savedAtMillis) {}
+
+    record Row(
+        long timestamp,
+        String time,
+        String temperature,
+        String description,
+        int icon
+    ) {}
+}
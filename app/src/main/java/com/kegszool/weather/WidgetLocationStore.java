@@ -0,0 +1,68 @@
+package com.kegszool.weather;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+/**
+ * Location pinned to each widget instance. Widgets without a pin follow
+ * the last location viewed in the app.
+ */
+final class WidgetLocationStore {
+
+    private static final String PREF_NAME = "widget_locations";
+    private static final String KEY_CITY_PREFIX = "city_";
+    private static final String KEY_LATITUDE_PREFIX = "latitude_";
+    private static final String KEY_LONGITUDE_PREFIX = "longitude_";
+
+    private WidgetLocationStore() {}
+
+    static void save(Context context, int appWidgetId, WeatherLocation location) {
+        if (context == null || location == null || !location.isValid()) {
+            return;
+        }
+        getPrefs(context).edit()
+                .putString(KEY_CITY_PREFIX + appWidgetId, location.isCity() ? location.city() : "")
+                .putLong(KEY_LATITUDE_PREFIX + appWidgetId,
+                        Double.doubleToRawLongBits(location.latitude()))
+                .putLong(KEY_LONGITUDE_PREFIX + appWidgetId,
+                        Double.doubleToRawLongBits(location.longitude()))
+                .apply();
+    }
+
+    static WeatherLocation read(Context context, int appWidgetId) {
+        if (context == null) {
+            return null;
+        }
+        SharedPreferences prefs = getPrefs(context);
+        if (!prefs.contains(KEY_CITY_PREFIX + appWidgetId)) {
+            return null;
+        }
+        String city = prefs.getString(KEY_CITY_PREFIX + appWidgetId, "");
+        if (!TextUtils.isEmpty(city)) {
+            return WeatherLocation.ofCity(city);
+        }
+        WeatherLocation location = WeatherLocation.ofCoordinates(
+                Double.longBitsToDouble(prefs.getLong(KEY_LATITUDE_PREFIX + appWidgetId, 0L)),
+                Double.longBitsToDouble(prefs.getLong(KEY_LONGITUDE_PREFIX + appWidgetId, 0L)));
+        return location.isValid() ? location : null;
+    }
+
+    static void remove(Context context, int[] appWidgetIds) {
+        if (context == null || appWidgetIds == null) {
+            return;
+        }
+        SharedPreferences.Editor editor = getPrefs(context).edit();
+        for (int appWidgetId : appWidgetIds) {
+            editor.remove(KEY_CITY_PREFIX + appWidgetId)
+                    .remove(KEY_LATITUDE_PREFIX + appWidgetId)
+                    .remove(KEY_LONGITUDE_PREFIX + appWidgetId);
+        }
+        editor.apply();
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+}
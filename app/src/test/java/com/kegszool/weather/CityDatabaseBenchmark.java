@@ -0,0 +1,135 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Suggestion lookups on a writer-built database the size of the GeoNames
+ * cities500 dump: 200k cities with Latin and Cyrillic aliases and a
+ * long-tailed population. Prints the mean time per lookup and the bytes
+ * allocated per lookup for short prefixes, longer prefixes and typos that
+ * go through the fuzzy pass.
+ */
+public class CityDatabaseBenchmark {
+
+    private static final int CITY_COUNT = 200_000;
+    private static final int LIMIT = 8;
+    private static final int QUERIES = 2_000;
+    private static final int ROUNDS = 5;
+
+    private static final String[] SYLLABLES = {
+            "ka", "ro", "mi", "sa", "ne", "to", "vi", "la", "po", "de", "ber", "gor", "stan",
+            "burg", "ville", "ton", "sk", "ov", "in", "an", "el", "mar", "san", "lin", "port"
+    };
+    private static final String[] CYRILLIC_SYLLABLES = {
+            "ка", "ро", "ми", "са", "не", "то", "ви", "ла", "по", "де", "бер", "гор", "ск", "ов"
+    };
+
+    @Test
+    public void lookupLatencyAndAllocations() throws IOException {
+        Random random = new Random(11L);
+        List<String> names = new ArrayList<>();
+        CityDatabase database = randomDatabase(CITY_COUNT, random, names);
+
+        report(database, "1-2 letter prefix", queries(names, random, 1, 2, false));
+        report(database, "3-6 letter prefix", queries(names, random, 3, 6, false));
+        report(database, "typo, fuzzy pass", queries(names, random, 6, 10, true));
+    }
+
+    static CityDatabase randomDatabase(int count, Random random, List<String> names) throws IOException {
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        for (int i = 0; i < count; i++) {
+            String name = capitalize(word(random, SYLLABLES, 2 + random.nextInt(3)));
+            if (random.nextInt(8) == 0) {
+                name = name + " " + capitalize(word(random, SYLLABLES, 1 + random.nextInt(2)));
+            }
+            String[] aliases = new String[random.nextInt(4)];
+            for (int a = 0; a < aliases.length; a++) {
+                aliases[a] = a == 0
+                        ? capitalize(word(random, CYRILLIC_SYLLABLES, 2 + random.nextInt(3)))
+                        : name + (char) ('a' + random.nextInt(26));
+            }
+            // Pareto-like: a few large cities and a long tail around the 500 cut-off.
+            int population = (int) Math.min(30_000_000d, 500d / Math.pow(1 - random.nextDouble(), 1.2));
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            writer.add(name, "XX", latitude, longitude, population, aliases);
+            names.add(name);
+        }
+        return CityDatabase.wrap(writer.build());
+    }
+
+    private static void report(CityDatabase database, String label, String[] queries) {
+        int found = 0;
+        for (int round = 0; round < 2; round++) {
+            for (String query : queries) {
+                found += database.search(query, LIMIT).size();
+            }
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String query : queries) {
+                found += database.search(query, LIMIT).size();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        int lookups = ROUNDS * queries.length;
+
+        System.out.println(String.format(Locale.US,
+                "CityDatabase %s: %.1f us/lookup, %d bytes/lookup",
+                label, nanos / 1_000.0 / lookups, allocated / lookups));
+        assertTrue(found > 0);
+    }
+
+    private static String[] queries(
+        List<String> names,
+        Random random,
+        int minLength,
+        int maxLength,
+        boolean withTypo
+    ) {
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            String name = names.get(random.nextInt(names.size())).toLowerCase(Locale.ROOT);
+            int length = Math.min(name.length(), minLength + random.nextInt(maxLength - minLength + 1));
+            StringBuilder query = new StringBuilder(name.substring(0, length));
+            if (withTypo && length > 2) {
+                int position = 1 + random.nextInt(length - 1);
+                query.setCharAt(position, (char) ('a' + random.nextInt(26)));
+            }
+            queries[i] = query.toString();
+        }
+        return queries;
+    }
+
+    private static String word(Random random, String[] syllables, int count) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            word.append(syllables[random.nextInt(syllables.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /** Bytes allocated by this thread, or 0 where the JVM does not report it. */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+}
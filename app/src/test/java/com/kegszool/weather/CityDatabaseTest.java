@@ -0,0 +1,145 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CityDatabaseTest {
+
+    private CityDatabase database;
+
+    @Before
+    public void setUp() throws IOException {
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        writer.add("Moscow", "RU", 55.7558, 37.6173, 12_600_000, "Москва", "Moskva");
+        writer.add("Perm", "RU", 58.0105, 56.2502, 1_030_000, "Пермь");
+        writer.add("Paris", "FR", 48.8566, 2.3522, 2_100_000, "Париж");
+        writer.add("Paris", "US", 33.6609, -95.5555, 25_000);
+        writer.add("Montreal", "CA", 45.5017, -73.5673, 1_760_000, "Монреаль");
+        writer.add("Rostov-on-Don", "RU", 47.2357, 39.7015, 1_140_000, "Ростов-на-Дону");
+        writer.add("Unknown", "", Double.NaN, Double.NaN, 0);
+        database = CityDatabase.wrap(writer.build());
+    }
+
+    @Test
+    public void readsCityRecords() {
+        assertEquals(7, database.size());
+        CityDatabase.City moscow = database.get(0);
+        assertEquals("Moscow", moscow.name());
+        assertEquals("Moscow, RU", moscow.label());
+        assertEquals(55.7558, moscow.latitude(), 1e-6);
+        assertEquals(37.6173, moscow.longitude(), 1e-6);
+        assertEquals(12_600_000, moscow.population());
+        assertTrue(moscow.hasCoordinates());
+
+        CityDatabase.City unknown = database.get(6);
+        assertEquals("Unknown", unknown.label());
+        assertFalse(unknown.hasCoordinates());
+    }
+
+    @Test
+    public void prefixSearchRanksByPopulation() {
+        assertEquals(List.of("Moscow, RU", "Montreal, CA"), labels("mo", 10));
+        assertEquals(List.of("Paris, FR", "Paris, US"), labels("PARI", 10));
+        assertEquals(List.of("Moscow, RU"), labels("mo", 1));
+    }
+
+    @Test
+    public void fuzzyMatchesFollowPrefixMatches() {
+        assertEquals(List.of("Paris, FR", "Paris, US", "Perm, RU"), labels("par", 10));
+    }
+
+    @Test
+    public void ranksEveryPrefixMatchByPopulation() throws IOException {
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        for (int i = 0; i < 30_000; i++) {
+            writer.add("Sa" + letters(i), "XX", 0, 0, 1_000 + i % 500);
+        }
+        // Sorts after every other "sa" key, far past any bounded scan.
+        writer.add("Sazzzzzz", "XX", 0, 0, 5_000_000);
+        writer.add("Saz", "XX", 0, 0, 4_000_000);
+        CityDatabase crowded = CityDatabase.wrap(writer.build());
+
+        for (String query : List.of("s", "sa", "saz")) {
+            List<CityDatabase.City> top = crowded.search(query, 2);
+            assertEquals(query, "Sazzzzzz", top.get(0).name());
+            assertEquals(query, "Saz", top.get(1).name());
+        }
+        // The prefix table (limit <= 24) and the full scan rank alike.
+        List<CityDatabase.City> fromTable = crowded.search("sa", 24);
+        List<CityDatabase.City> fromScan = crowded.search("sa", 30);
+        for (int i = 0; i < fromTable.size(); i++) {
+            assertEquals(fromScan.get(i).population(), fromTable.get(i).population());
+        }
+    }
+
+    @Test
+    public void matchesAliasesAndNormalizesInput() {
+        assertEquals(List.of("Moscow, RU"), labels("  москва ", 10));
+        assertEquals(List.of("Moscow, RU"), labels("Moskva", 10));
+        assertEquals(List.of("Rostov-on-Don, RU"), labels("ростов на", 10));
+        assertEquals(List.of("Rostov-on-Don, RU"), labels("rostov-on", 10));
+    }
+
+    @Test
+    public void returnsEachCityOnce() {
+        assertEquals(List.of("Moscow, RU"), labels("mosc", 10));
+    }
+
+    @Test
+    public void fuzzyMatchesLatinTypos() {
+        assertEquals(List.of("Paris, FR", "Paris, US"), labels("pariz", 10));
+        assertEquals(List.of("Montreal, CA"), labels("montrael", 10));
+    }
+
+    @Test
+    public void fuzzyMatchesCyrillicTyposByCharacter() {
+        // "а" and "ь" differ in both UTF-8 bytes; this is one character edit.
+        assertEquals(List.of("Perm, RU"), labels("перма", 10));
+        assertEquals(List.of("Moscow, RU"), labels("моксва", 10));
+    }
+
+    @Test
+    public void ignoresShortAndUnrelatedQueries() {
+        assertTrue(labels("", 10).isEmpty());
+        assertTrue(labels("zz", 10).isEmpty());
+        assertTrue(labels("london", 10).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignBuffers() throws IOException {
+        CityDatabase.wrap(ByteBuffer.allocate(64));
+    }
+
+    @Test
+    public void normalizesNames() {
+        assertEquals("ростов на дону", CityDatabase.normalize(" Ростов-на-Дону "));
+        assertEquals("орел", CityDatabase.normalize("Орёл"));
+        assertEquals("new york", CityDatabase.normalize("New   York"));
+    }
+
+    private static String letters(int value) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.append((char) ('a' + value % 26));
+            value /= 26;
+        } while (value > 0);
+        return letters.toString();
+    }
+
+    private List<String> labels(String query, int limit) {
+        List<String> labels = new ArrayList<>();
+        for (CityDatabase.City city : database.search(query, limit)) {
+            labels.add(city.label());
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,68 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class CoordinateGridTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void jitterWithinACellSharesTheKey() {
+        CoordinateGrid grid = CoordinateGrid.DEFAULT;
+
+        CoordinateGrid.Cell cell = grid.snap(55.7512, 37.6184);
+        assertEquals(cell.key(), grid.snap(55.7534, 37.6201).key());
+        assertEquals(cell, grid.snap(55.7999, 37.6499));
+        assertNotEquals(cell.key(), grid.snap(55.8001, 37.6184).key());
+    }
+
+    @Test
+    public void snapsToTheCellCentre() {
+        CoordinateGrid.Cell cell = CoordinateGrid.DEFAULT.snap(55.7512, 37.6184);
+
+        assertEquals(55.775, cell.centerLatitude(), EPSILON);
+        assertEquals(37.625, cell.centerLongitude(), EPSILON);
+        assertEquals("0.05:1115,752", cell.key());
+    }
+
+    @Test
+    public void negativeCoordinatesFloorAwayFromZero() {
+        CoordinateGrid.Cell cell = CoordinateGrid.COARSE.snap(-0.1, -0.1);
+
+        assertEquals(-1L, cell.latitudeIndex());
+        assertEquals(-1L, cell.longitudeIndex());
+        assertEquals(-0.125, cell.centerLatitude(), EPSILON);
+        assertEquals(-0.125, cell.centerLongitude(), EPSILON);
+    }
+
+    @Test
+    public void wrapsLongitudeAndClampsLatitude() {
+        CoordinateGrid grid = CoordinateGrid.COARSE;
+
+        assertEquals(grid.snap(10, -179.9), grid.snap(10, 180.1));
+        assertEquals(grid.snap(10, 20), grid.snap(10, 380));
+        assertEquals(grid.snap(90, 0), grid.snap(95, 0));
+        assertEquals(90.0, grid.snap(90, 0).centerLatitude(), EPSILON);
+        assertEquals(grid.snap(-90, 0), grid.snap(-120, 0));
+        assertEquals(-89.875, grid.snap(-120, 0).centerLatitude(), EPSILON);
+    }
+
+    @Test
+    public void gridsOfDifferentSizesNeverShareKeys() {
+        assertNotEquals(
+                CoordinateGrid.FINE.snap(0.001, 0.001).key(),
+                CoordinateGrid.DEFAULT.snap(0.001, 0.001).key());
+    }
+
+    @Test
+    public void rejectsInvalidCellSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new CoordinateGrid(0));
+        assertThrows(IllegalArgumentException.class, () -> new CoordinateGrid(-1));
+        assertThrows(IllegalArgumentException.class, () -> new CoordinateGrid(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> new CoordinateGrid(10.5));
+    }
+}
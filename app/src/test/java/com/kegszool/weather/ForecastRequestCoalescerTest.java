@@ -0,0 +1,153 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@RunWith(RobolectricTestRunner.class)
+public class ForecastRequestCoalescerTest {
+
+    private static final long TIMEOUT_MILLIS = 5_000L;
+
+    private ForecastRequestCoalescer coalescer;
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch loading = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        coalescer = new ForecastRequestCoalescer(
+                WeatherDispatcher.getInstance(), new Handler(Looper.getMainLooper()));
+    }
+
+    @Test
+    public void concurrentRequestsShareOneLoad() throws InterruptedException {
+        WeatherData.Result result = WeatherData.Result.error("shared");
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, first, blockingLoader(result));
+        assertTrue(loading.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, second, blockingLoader(result));
+        release.countDown();
+
+        awaitDelivery(first, second);
+        assertEquals(1, loads.get());
+        assertSame(result, first.results.get(0));
+        assertSame(result, second.results.get(0));
+        assertEquals(1, coalescer.getStartedCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void differentKeysLoadSeparately() throws InterruptedException {
+        Recorder moscow = new Recorder();
+        Recorder paris = new Recorder();
+        release.countDown();
+
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, moscow,
+                blockingLoader(WeatherData.Result.error("moscow")));
+        coalescer.join("paris", WeatherDispatcher.Priority.FOREGROUND, paris,
+                blockingLoader(WeatherData.Result.error("paris")));
+
+        awaitDelivery(moscow, paris);
+        assertEquals(2, loads.get());
+        assertEquals("moscow", moscow.results.get(0).getError());
+        assertEquals("paris", paris.results.get(0).getError());
+        assertEquals(2, coalescer.getStartedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void leavingListenerIsNotCalled() throws InterruptedException {
+        Recorder staying = new Recorder();
+        Recorder leaving = new Recorder();
+
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, staying,
+                blockingLoader(WeatherData.Result.error("shared")));
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, leaving,
+                blockingLoader(WeatherData.Result.error("shared")));
+        coalescer.leave("moscow", leaving);
+        release.countDown();
+
+        awaitDelivery(staying);
+        assertEquals(1, staying.results.size());
+        assertTrue(leaving.results.isEmpty());
+    }
+
+    @Test
+    public void lastListenerLeavingDropsTheFlight() throws InterruptedException {
+        Recorder abandoned = new Recorder();
+        Recorder later = new Recorder();
+
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, abandoned,
+                blockingLoader(WeatherData.Result.error("first")));
+        assertTrue(loading.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        coalescer.leave("moscow", abandoned);
+        // The key is free again, so this starts a new load instead of joining.
+        coalescer.join("moscow", WeatherDispatcher.Priority.FOREGROUND, later,
+                () -> WeatherData.Result.error("second"));
+        release.countDown();
+
+        awaitDelivery(later);
+        assertEquals("second", later.results.get(0).getError());
+        assertTrue(abandoned.results.isEmpty());
+        assertEquals(2, coalescer.getStartedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    private Supplier<WeatherData.Result> blockingLoader(WeatherData.Result result) {
+        return () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        };
+    }
+
+    /** Results are posted to the main looper from a lane thread. */
+    private static void awaitDelivery(Recorder... recorders) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            boolean delivered = true;
+            for (Recorder recorder : recorders) {
+                delivered &= !recorder.results.isEmpty();
+            }
+            if (delivered) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("No result delivered");
+    }
+
+    private static final class Recorder implements ForecastRequestCoalescer.Listener {
+        final List<WeatherData.Result> results = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onResult(WeatherData.Result result) {
+            results.add(result);
+        }
+    }
+}
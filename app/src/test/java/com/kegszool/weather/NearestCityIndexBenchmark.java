@@ -0,0 +1,67 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Nearest-city throughput of the k-d tree against a linear scan over a
+ * GeoNames-sized set of cities. Prints lookups per second; the assertion
+ * only guards that both agree, so timing noise cannot fail the build.
+ */
+public class NearestCityIndexBenchmark {
+
+    private static final int CITY_COUNT = 200_000;
+    private static final int TREE_LOOKUPS = 200_000;
+    private static final int SCAN_LOOKUPS = 50;
+
+    @Test
+    public void treeLookupsVersusLinearScan() throws IOException {
+        CityDatabase database = NearestCityIndexTest.randomDatabase(CITY_COUNT, 3L);
+        NearestCityIndex index = new NearestCityIndex(database);
+        double[] points = randomPoints(TREE_LOOKUPS, 5L);
+
+        int checksum = 0;
+        for (int i = 0; i < 20_000; i++) {
+            checksum += index.nearest(points[2 * i], points[2 * i + 1], 25_000).index();
+        }
+
+        long treeStart = System.nanoTime();
+        for (int i = 0; i < TREE_LOOKUPS; i++) {
+            checksum += index.nearest(points[2 * i], points[2 * i + 1], 25_000).index();
+        }
+        long treeNanos = System.nanoTime() - treeStart;
+
+        int agreed = 0;
+        long scanStart = System.nanoTime();
+        for (int i = 0; i < SCAN_LOOKUPS; i++) {
+            int expected = NearestCityIndexTest.linearNearest(database, points[2 * i], points[2 * i + 1]);
+            if (expected == index.nearest(points[2 * i], points[2 * i + 1], 25_000).index()) {
+                agreed++;
+            }
+        }
+        long scanNanos = System.nanoTime() - scanStart;
+
+        System.out.println(String.format(Locale.US,
+                "NearestCityIndex over %d cities: k-d tree %.2f us/lookup, linear scan %.2f us/lookup (checksum %d)",
+                CITY_COUNT,
+                treeNanos / 1_000.0 / TREE_LOOKUPS,
+                scanNanos / 1_000.0 / SCAN_LOOKUPS,
+                checksum));
+        assertEquals(SCAN_LOOKUPS, agreed);
+    }
+
+    private static double[] randomPoints(int count, long seed) {
+        Random random = new Random(seed);
+        double[] points = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            points[2 * i] = random.nextDouble() * 180 - 90;
+            points[2 * i + 1] = random.nextDouble() * 360 - 180;
+        }
+        return points;
+    }
+}
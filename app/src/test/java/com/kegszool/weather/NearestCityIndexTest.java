@@ -0,0 +1,121 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class NearestCityIndexTest {
+
+    @Test
+    public void findsTheClosestCity() throws IOException {
+        NearestCityIndex index = new NearestCityIndex(database(
+                city("Moscow", 55.7558, 37.6173),
+                city("Saint Petersburg", 59.9343, 30.3351),
+                city("Kazan", 55.7961, 49.1064)));
+
+        assertEquals("Moscow", index.nearest(55.70, 37.50, 50).name());
+        assertEquals("Saint Petersburg", index.nearest(59.90, 30.20, 50).name());
+        assertEquals("Kazan", index.nearest(55.80, 49.00, 50).name());
+    }
+
+    @Test
+    public void respectsTheDistanceLimit() throws IOException {
+        NearestCityIndex index = new NearestCityIndex(database(city("Moscow", 55.7558, 37.6173)));
+
+        // About 44 km north of the centre.
+        assertNotNull(index.nearest(56.15, 37.6173, 50));
+        assertNull(index.nearest(56.15, 37.6173, 40));
+        assertNull(index.nearest(0, 0, 1_000));
+    }
+
+    @Test
+    public void wrapsAroundTheAntimeridian() throws IOException {
+        NearestCityIndex index = new NearestCityIndex(database(
+                city("Suva", -18.1416, 178.4419),
+                city("Apia", -13.8333, -171.7667)));
+
+        assertEquals("Suva", index.nearest(-18.0, -179.9, 500).name());
+        assertEquals("Apia", index.nearest(-13.8, -171.9, 500).name());
+    }
+
+    @Test
+    public void skipsCitiesWithoutCoordinates() throws IOException {
+        NearestCityIndex index = new NearestCityIndex(database(
+                city("Nowhere", Double.NaN, Double.NaN),
+                city("Oslo", 59.9139, 10.7522)));
+
+        assertEquals(1, index.size());
+        assertEquals("Oslo", index.nearest(59.9, 10.7, 50).name());
+        assertNull(index.nearest(Double.NaN, 10.7, 50));
+    }
+
+    @Test
+    public void matchesALinearScan() throws IOException {
+        CityDatabase database = randomDatabase(5_000, 7L);
+        NearestCityIndex index = new NearestCityIndex(database);
+        Random random = new Random(11L);
+
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            CityDatabase.City found = index.nearest(latitude, longitude, 25_000);
+            int expected = linearNearest(database, latitude, longitude);
+            assertEquals(
+                    distance(database, expected, latitude, longitude),
+                    distance(database, found.index(), latitude, longitude),
+                    1e-9);
+        }
+    }
+
+    static CityDatabase randomDatabase(int count, long seed) throws IOException {
+        Random random = new Random(seed);
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        for (int i = 0; i < count; i++) {
+            double latitude = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+            double longitude = random.nextDouble() * 360 - 180;
+            writer.add("City " + i, "", latitude, longitude, count - i);
+        }
+        return CityDatabase.wrap(writer.build());
+    }
+
+    static int linearNearest(CityDatabase database, double latitude, double longitude) {
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < database.size(); i++) {
+            double candidate = distance(database, i, latitude, longitude);
+            if (candidate < bestDistance) {
+                bestDistance = candidate;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Central angle in radians. */
+    private static double distance(CityDatabase database, int index, double latitude, double longitude) {
+        double phi1 = Math.toRadians(latitude);
+        double phi2 = Math.toRadians(database.latitudeAt(index));
+        double deltaPhi = phi2 - phi1;
+        double deltaLambda = Math.toRadians(database.longitudeAt(index) - longitude);
+        double a = Math.sin(deltaPhi / 2) * Math.sin(deltaPhi / 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(deltaLambda / 2) * Math.sin(deltaLambda / 2);
+        return 2 * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static CityDatabase database(Object[]... cities) throws IOException {
+        CityDatabaseWriter writer = new CityDatabaseWriter();
+        for (Object[] city : cities) {
+            writer.add((String) city[0], "", (double) city[1], (double) city[2], 1);
+        }
+        return CityDatabase.wrap(writer.build());
+    }
+
+    private static Object[] city(String name, double latitude, double longitude) {
+        return new Object[] {name, latitude, longitude};
+    }
+}
@@ -0,0 +1,65 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = new RetryPolicy(3, 500L, 8_000L);
+
+    @Test
+    public void limitsAttempts() {
+        assertTrue(policy.canRetry(1));
+        assertTrue(policy.canRetry(2));
+        assertFalse(policy.canRetry(3));
+    }
+
+    @Test
+    public void retriesOnlyThrottlingAndServerErrors() {
+        assertTrue(policy.isRetryableStatus(429));
+        assertTrue(policy.isRetryableStatus(500));
+        assertTrue(policy.isRetryableStatus(503));
+        assertFalse(policy.isRetryableStatus(404));
+        assertFalse(policy.isRetryableStatus(401));
+    }
+
+    @Test
+    public void jitteredDelayStaysUnderTheExponentialCeiling() {
+        for (int i = 0; i < 1_000; i++) {
+            long first = policy.delayMillis(1, -1L);
+            long third = policy.delayMillis(3, -1L);
+            long tenth = policy.delayMillis(10, -1L);
+            assertTrue(first >= 0L && first <= 500L);
+            assertTrue(third >= 0L && third <= 2_000L);
+            assertTrue(tenth >= 0L && tenth <= 8_000L);
+        }
+    }
+
+    @Test
+    public void honoursRetryAfterInFull() {
+        assertEquals(0L, policy.delayMillis(1, 0L));
+        assertEquals(7_000L, policy.delayMillis(1, 7_000L));
+        assertEquals(8_000L, policy.delayMillis(2, 8_000L));
+    }
+
+    @Test
+    public void givesUpWhenRetryAfterExceedsTheBudget() {
+        assertEquals(-1L, policy.delayMillis(1, 8_001L));
+        assertEquals(-1L, policy.delayMillis(1, 120_000L));
+    }
+
+    @Test
+    public void parsesRetryAfterSecondsAndHttpDates() {
+        assertEquals(-1L, RetryPolicy.parseRetryAfterMillis(null, 0L));
+        assertEquals(-1L, RetryPolicy.parseRetryAfterMillis(" ", 0L));
+        assertEquals(-1L, RetryPolicy.parseRetryAfterMillis("soon", 0L));
+        assertEquals(120_000L, RetryPolicy.parseRetryAfterMillis(" 120 ", 0L));
+
+        long now = 784_111_777_000L - 30_000L;
+        assertEquals(30_000L, RetryPolicy.parseRetryAfterMillis("Sun, 06 Nov 1994 08:49:37 GMT", now));
+        assertEquals(0L, RetryPolicy.parseRetryAfterMillis("Sun, 06 Nov 1994 08:49:37 GMT", now + 60_000L));
+    }
+}
@@ -0,0 +1,59 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Interpolation throughput for heatmap tiles at the size the provider
+ * renders them, with the 3x3 samples one camera position produces. Prints
+ * tiles per second; encoding to PNG is left out since it needs a device.
+ */
+public class TemperatureTileProviderBenchmark {
+
+    private static final int GRID_SIZE = 32;
+    private static final int ZOOM = 8;
+    private static final int WARMUP_TILES = 2_000;
+    private static final int MEASURED_TILES = 10_000;
+
+    @Test
+    public void renderThroughput() {
+        // Zoom 8 tiles around Moscow, sampled like a camera over them.
+        int baseX = 155;
+        int baseY = 80;
+        List<TemperatureSamples.Sample> samples = new ArrayList<>();
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                samples.add(TemperatureTileProviderTest.sample(
+                        55.0 + row, 37.0 + column, -5 + 3 * (row + column), 170));
+            }
+        }
+
+        long checksum = 0L;
+        for (int i = 0; i < WARMUP_TILES; i++) {
+            checksum += render(baseX + i % 4, baseY + i / 4 % 4, samples);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_TILES; i++) {
+            checksum += render(baseX + i % 4, baseY + i / 4 % 4, samples);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        System.out.println(String.format(Locale.US,
+                "TemperatureTileProvider.render %dx%d, %d samples: %.1f us/tile, %.0f tiles/s (checksum %d)",
+                GRID_SIZE, GRID_SIZE, samples.size(),
+                elapsedNanos / 1_000.0 / MEASURED_TILES,
+                MEASURED_TILES * 1e9 / elapsedNanos,
+                checksum));
+        assertNotEquals(0L, checksum);
+    }
+
+    private static long render(int x, int y, List<TemperatureSamples.Sample> samples) {
+        int[] pixels = TemperatureTileProvider.render(x, y, ZOOM, samples, GRID_SIZE);
+        return pixels[pixels.length / 2] & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,71 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TemperatureTileProviderTest {
+
+    @Test
+    public void emptyWhereNoSampleReaches() {
+        int[] pixels = TemperatureTileProvider.render(
+                0, 0, 0, List.of(sample(60, 100, 20, 500)), 8);
+
+        assertEquals(0, pixels[7 * 8]);
+        int[] empty = TemperatureTileProvider.render(0, 0, 0, Collections.emptyList(), 4);
+        for (int pixel : empty) {
+            assertEquals(0, pixel);
+        }
+    }
+
+    @Test
+    public void pixelOnASampleTakesItsColour() {
+        // A 1x1 render of tile 0/0/0 samples the point (0, 0).
+        assertEquals(0x96F4D35E, render(sample(0, 0, 20, 1_000)));
+        assertEquals(0x963F1D8C, render(sample(0, 0, -50, 1_000)));
+        assertEquals(0x96C8283C, render(sample(0, 0, 60, 1_000)));
+    }
+
+    @Test
+    public void interpolatesBetweenSamples() {
+        int pixel = render(sample(0, -1, 0, 1_000), sample(0, 1, 20, 1_000));
+
+        assertEquals(0x967DD87A, pixel);
+    }
+
+    @Test
+    public void fadesTowardsTheEdgeOfTheRadius() {
+        // 300 km from a 400 km sample: coverage 0.25, half the full alpha.
+        int pixel = render(sample(0, 300 / 111.32, 20, 400));
+
+        assertEquals(75, pixel >>> 24, 1);
+        assertEquals(0xF4D35E, pixel & 0xFFFFFF);
+    }
+
+    @Test
+    public void samplesReachAcrossTheAntimeridian() {
+        // Tile 4/0/8 spans 180W..157.5W just south of the equator.
+        int[] pixels = TemperatureTileProvider.render(
+                0, 8, 4, List.of(sample(-1, 179.5, 20, 500)), 8);
+
+        assertNotEquals(0, pixels[0]);
+        assertEquals(0, pixels[7]);
+    }
+
+    private static int render(TemperatureSamples.Sample... samples) {
+        return TemperatureTileProvider.render(0, 0, 0, List.of(samples), 1)[0];
+    }
+
+    static TemperatureSamples.Sample sample(
+        double latitude,
+        double longitude,
+        double temperature,
+        double radiusKm
+    ) {
+        return new TemperatureSamples.Sample(latitude, longitude, temperature, radiusKm, 0L);
+    }
+}
@@ -0,0 +1,53 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Back-to-back request latency against a loopback stub server, with the
+ * connection kept alive versus closed after every response. Plain HTTP is
+ * used, so the pooled side saves the TCP setup only; against the real API
+ * it also skips DNS and the TLS handshake.
+ */
+public class UrlConnectionTransportBenchmark {
+
+    private static final int WARMUP_REQUESTS = 200;
+    private static final int MEASURED_REQUESTS = 1_000;
+
+    @Test
+    public void pooledVersusFreshConnections() throws IOException {
+        double pooledMicros;
+        double freshMicros;
+        int freshConnections;
+        try (UrlConnectionTransportTest.StubServer server = new UrlConnectionTransportTest.StubServer(false)) {
+            pooledMicros = measure(server);
+            assertEquals(1, server.acceptedConnections());
+        }
+        try (UrlConnectionTransportTest.StubServer server = new UrlConnectionTransportTest.StubServer(true)) {
+            freshMicros = measure(server);
+            freshConnections = server.acceptedConnections();
+        }
+
+        System.out.println(String.format(Locale.US,
+                "UrlConnectionTransport back-to-back: pooled %.1f us/request, fresh %.1f us/request",
+                pooledMicros, freshMicros));
+        assertEquals(WARMUP_REQUESTS + MEASURED_REQUESTS, freshConnections);
+    }
+
+    private static double measure(UrlConnectionTransportTest.StubServer server) throws IOException {
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+        String url = server.url("/forecast");
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            UrlConnectionTransportTest.readBody(transport.get(url));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            UrlConnectionTransportTest.readBody(transport.get(url));
+        }
+        return (System.nanoTime() - start) / 1_000.0 / MEASURED_REQUESTS;
+    }
+}
@@ -0,0 +1,174 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+public class UrlConnectionTransportTest {
+
+    private StubServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubServer(false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void reusesTheConnectionForBackToBackRequests() throws IOException {
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("{\"ok\":true}", readBody(transport.get(server.url("/forecast"))));
+        }
+
+        assertEquals(1, server.acceptedConnections());
+    }
+
+    @Test
+    public void decodesGzipAndReportsTimings() throws IOException {
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+
+        try (WeatherTransport.Response response = transport.get(server.url("/gzip"))) {
+            assertTrue(response.isSuccessful());
+            assertEquals("{\"ok\":true}", new String(
+                    response.body().readAllBytes(), StandardCharsets.UTF_8));
+            assertTrue(response.timings().connectMillis() >= 0L);
+            assertTrue(response.timings().firstByteMillis() >= 0L);
+        }
+    }
+
+    @Test
+    public void exposesErrorBodiesAndHeaders() throws IOException {
+        UrlConnectionTransport transport = new UrlConnectionTransport();
+
+        try (WeatherTransport.Response response = transport.get(server.url("/busy"))) {
+            assertEquals(503, response.code());
+            assertEquals("7", response.header("Retry-After"));
+            assertNull(response.header("X-Missing"));
+            assertEquals("{\"message\":\"busy\"}", new String(
+                    response.body().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    static String readBody(WeatherTransport.Response response) throws IOException {
+        try (response) {
+            return new String(response.body().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Minimal HTTP/1.1 server on the loopback interface that counts accepted
+     * connections. With {@code closeEachResponse} it answers every request
+     * with {@code Connection: close}, forcing a new connection each time.
+     */
+    static final class StubServer implements AutoCloseable {
+
+        private final ServerSocket socket = new ServerSocket(0);
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final boolean closeEachResponse;
+
+        StubServer(boolean closeEachResponse) throws IOException {
+            this.closeEachResponse = closeEachResponse;
+            Thread acceptor = new Thread(this::acceptLoop, "stub-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + path;
+        }
+
+        int acceptedConnections() {
+            return accepted.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    accepted.incrementAndGet();
+                    Thread handler = new Thread(() -> serve(client), "stub-connection");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (client) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        client.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream output = client.getOutputStream();
+                String requestLine;
+                while ((requestLine = reader.readLine()) != null) {
+                    String line;
+                    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                        // Headers are not needed; requests carry no body.
+                    }
+                    output.write(respond(requestLine.split(" ")[1]));
+                    output.flush();
+                    if (closeEachResponse) {
+                        return;
+                    }
+                }
+            } catch (IOException ignored) {
+                // Client went away.
+            }
+        }
+
+        private byte[] respond(String path) throws IOException {
+            String status = "200 OK";
+            String extraHeaders = "";
+            byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+            if (path.equals("/gzip")) {
+                ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(zipped)) {
+                    gzip.write(body);
+                }
+                body = zipped.toByteArray();
+                extraHeaders = "Content-Encoding: gzip\r\n";
+            } else if (path.equals("/busy")) {
+                status = "503 Service Unavailable";
+                extraHeaders = "Retry-After: 7\r\n";
+                body = "{\"message\":\"busy\"}".getBytes(StandardCharsets.UTF_8);
+            }
+            String head = "HTTP/1.1 " + status + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + extraHeaders
+                    + (closeEachResponse ? "Connection: close\r\n" : "")
+                    + "\r\n";
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            response.write(head.getBytes(StandardCharsets.ISO_8859_1));
+            response.write(body);
+            return response.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class WeatherBatchTest {
+
+    private static final long TIMEOUT_MILLIS = 5_000L;
+
+    private static final String FORECAST = "{"
+            + "\"list\":[{\"dt\":1699952400,\"main\":{\"temp\":12.6,\"pressure\":1009,\"humidity\":81},"
+            + "\"weather\":[{\"id\":500,\"description\":\"light rain\"}],"
+            + "\"wind\":{\"speed\":4.5},\"visibility\":10000,\"dt_txt\":\"2023-11-14 09:00:00\"}],"
+            + "\"city\":{\"name\":\"%s\",\"country\":\"XX\"}"
+            + "}";
+
+    private final StubTransport transport = new StubTransport();
+    private final Recorder recorder = new Recorder();
+    private WeatherRouter router;
+
+    @Before
+    public void setUp() {
+        WeatherMemoryCache.getInstance().clear();
+        WeatherService.setTransport(transport);
+        router = new WeatherRouter("key", null);
+    }
+
+    @After
+    public void tearDown() {
+        transport.release.countDown();
+        WeatherService.setTransport(new UrlConnectionTransport());
+        WeatherMemoryCache.getInstance().clear();
+    }
+
+    @Test
+    public void oneFailingCityDoesNotHoldBackTheRest() throws InterruptedException {
+        transport.release.countDown();
+
+        router.requestWeatherBatch(
+                cities("Moscow", "Missing", "Paris", "Perm"),
+                2,
+                WeatherDispatcher.Priority.FOREGROUND,
+                recorder);
+
+        awaitFinished();
+        assertEquals(List.of("Moscow", "Paris", "Perm"), recorder.loadedSorted());
+        assertEquals(List.of("Missing: city not found"), recorder.failures);
+        assertEquals(3, recorder.succeeded);
+        assertEquals(1, recorder.failed);
+    }
+
+    @Test
+    public void neverRunsMoreThanTheConcurrencyCap() throws InterruptedException {
+        router.requestWeatherBatch(
+                cities("Moscow", "Paris", "Perm", "Omsk", "Kazan"),
+                2,
+                // Three lane threads, so only the batch cap can hold the third item back.
+                WeatherDispatcher.Priority.BACKGROUND,
+                recorder);
+
+        assertTrue(transport.awaitInFlight(2));
+        Thread.sleep(100);
+        assertEquals(2, transport.requests.get());
+        transport.release.countDown();
+
+        awaitFinished();
+        assertEquals(5, transport.requests.get());
+        assertEquals(2, transport.maxInFlight.get());
+        assertEquals(5, recorder.succeeded);
+    }
+
+    @Test
+    public void cachedBatchFinishesInsideStart() throws IOException {
+        for (String city : List.of("Moscow", "Paris")) {
+            WeatherData data = ForecastParser.parse(forecast(city));
+            WeatherMemoryCache.getInstance().put(
+                    WeatherRouter.cacheKeyFor(WeatherLocation.ofCity(city), CoordinateGrid.DEFAULT),
+                    data);
+        }
+
+        WeatherBatch batch = router.requestWeatherBatch(cities("Moscow", "Paris"), recorder);
+
+        // No looper turn: the callbacks already ran.
+        assertTrue(batch.isFinished());
+        assertEquals(1, recorder.finishedCount);
+        assertEquals(List.of("Moscow", "Paris"), recorder.loadedSorted());
+        assertEquals(0, transport.requests.get());
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (recorder.finishedCount == 0 && System.currentTimeMillis() < deadline) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(5);
+        }
+        assertEquals(1, recorder.finishedCount);
+    }
+
+    private static List<WeatherLocation> cities(String... names) {
+        List<WeatherLocation> locations = new ArrayList<>();
+        for (String name : names) {
+            locations.add(WeatherLocation.ofCity(name));
+        }
+        return locations;
+    }
+
+    private static InputStream forecast(String city) {
+        return new ByteArrayInputStream(
+                String.format(FORECAST, city).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Answers with a forecast for the requested city, or 404 for "Missing". */
+    private static final class StubTransport implements WeatherTransport {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public Response get(String endpoint) throws IOException {
+            requests.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            String city = endpoint.substring(endpoint.indexOf("q=") + 2, endpoint.indexOf('&'));
+            return city.equalsIgnoreCase("missing")
+                    ? new StubResponse(404, "{\"message\":\"city not found\"}")
+                    : new StubResponse(200, String.format(FORECAST, city));
+        }
+
+        boolean awaitInFlight(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (inFlight.get() < count) {
+                if (System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                Thread.sleep(5);
+            }
+            return true;
+        }
+    }
+
+    private record StubResponse(int code, String payload) implements WeatherTransport.Response {
+
+        @Override
+        public String header(String name) {
+            return null;
+        }
+
+        @Override
+        public InputStream body() {
+            return new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public WeatherTransport.Timings timings() {
+            return null;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static final class Recorder implements WeatherBatch.Callback {
+        final List<String> loaded = new ArrayList<>();
+        final List<String> failures = new ArrayList<>();
+        int succeeded;
+        int failed;
+        int finishedCount;
+
+        @Override
+        public void onItemLoaded(WeatherLocation location, WeatherData data, long elapsedMillis) {
+            loaded.add(location.city());
+        }
+
+        @Override
+        public void onItemFailed(WeatherLocation location, String message, long elapsedMillis) {
+            failures.add(location.city() + ": " + message);
+        }
+
+        @Override
+        public void onBatchFinished(int succeeded, int failed, long elapsedMillis) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+            finishedCount++;
+        }
+
+        List<String> loadedSorted() {
+            List<String> sorted = new ArrayList<>(loaded);
+            sorted.sort(null);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+public class WeatherDataCodecTest {
+
+    private static final long SAVED_AT = 1_700_000_000_123L;
+
+    @Test
+    public void roundTripsEveryField() throws IOException {
+        WeatherData data = sample();
+
+        WeatherDataStore.StoredWeather stored = read(write(data), true);
+
+        assertEquals(data, stored.data());
+        assertEquals(SAVED_AT, stored.savedAtMillis());
+    }
+
+    @Test
+    public void firstFrameReadStopsBeforeHourly() throws IOException {
+        WeatherData data = sample();
+
+        WeatherDataStore.StoredWeather stored = read(write(data), false);
+
+        assertEquals(data.location(), stored.data().location());
+        assertEquals(data.dailyForecasts(), stored.data().dailyForecasts());
+        assertTrue(stored.data().hourlyForecasts().isEmpty());
+    }
+
+    @Test
+    public void nullStringsComeBackEmpty() throws IOException {
+        WeatherData data = new WeatherData(null, null, 0, null, null, null, null, null, null, null);
+
+        WeatherData decoded = read(write(data), true).data();
+
+        assertEquals("", decoded.location());
+        assertEquals("", decoded.visibility());
+        assertTrue(decoded.dailyForecasts().isEmpty());
+    }
+
+    @Test
+    public void rejectsForeignAndCorruptedData() throws IOException {
+        byte[] bytes = write(sample());
+
+        byte[] foreign = bytes.clone();
+        foreign[0] ^= 0x01;
+        assertThrows(IOException.class, () -> read(foreign, true));
+
+        byte[] newerVersion = bytes.clone();
+        newerVersion[7] = 2;
+        assertThrows(IOException.class, () -> read(newerVersion, true));
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        assertThrows(IOException.class, () -> read(truncated, true));
+    }
+
+    @Test
+    public void rejectsImplausibleItemCounts() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x57544844);
+        out.writeInt(WeatherDataCodec.SCHEMA_VERSION);
+        out.writeLong(SAVED_AT);
+        for (int i = 0; i < 2; i++) {
+            out.writeUTF("");
+        }
+        out.writeInt(800);
+        for (int i = 0; i < 5; i++) {
+            out.writeUTF("");
+        }
+        out.writeInt(-1);
+
+        assertThrows(IOException.class, () -> read(bytes.toByteArray(), true));
+    }
+
+    private static WeatherData sample() {
+        return new WeatherData(
+                "Москва", "light rain", 500, "12", "81", "1009", "4.5", "10000",
+                List.of(
+                        new WeatherData.DailyForecast("Mon", "14", 500, "light rain"),
+                        new WeatherData.DailyForecast("Tue", "17", 800, "clear sky")),
+                List.of(
+                        new WeatherData.HourlyForecast(
+                                1_700_000_000L, "2023-11-14 22:00:00", 12.25, 81, 1009, 4.5, 10000, 500, "light rain"),
+                        new WeatherData.HourlyForecast(
+                                1_700_010_800L, "2023-11-15 01:00:00", Double.NaN, 85, 1008, 0.0, 0, 801, "")));
+    }
+
+    private static byte[] write(WeatherData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            WeatherDataCodec.write(out, data, SAVED_AT);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static WeatherDataStore.StoredWeather read(byte[] bytes, boolean includeHourly) throws IOException {
+        return WeatherDataCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)), includeHourly);
+    }
+}
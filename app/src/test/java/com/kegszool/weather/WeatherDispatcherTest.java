@@ -0,0 +1,91 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class WeatherDispatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 5_000L;
+
+    private final WeatherDispatcher dispatcher = WeatherDispatcher.getInstance();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Future<?>> submitted = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        for (Future<?> future : submitted) {
+            future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    public void foregroundWorkDoesNotWaitBehindPrefetch() throws InterruptedException {
+        CountDownLatch prefetchRunning = new CountDownLatch(1);
+        submitted.add(dispatcher.submit(WeatherDispatcher.Priority.PREFETCH, () -> {
+            prefetchRunning.countDown();
+            awaitRelease();
+        }));
+        assertTrue(prefetchRunning.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < 5; i++) {
+            submitted.add(dispatcher.submit(WeatherDispatcher.Priority.PREFETCH, this::awaitRelease));
+        }
+
+        CountDownLatch foregroundRan = new CountDownLatch(1);
+        CountDownLatch backgroundRan = new CountDownLatch(1);
+        dispatcher.submit(WeatherDispatcher.Priority.FOREGROUND, foregroundRan::countDown);
+        dispatcher.submit(WeatherDispatcher.Priority.BACKGROUND, backgroundRan::countDown);
+
+        assertTrue(foregroundRan.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(backgroundRan.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(5, dispatcher.getStats(WeatherDispatcher.Priority.PREFETCH).queued());
+        assertEquals(0, dispatcher.getStats(WeatherDispatcher.Priority.FOREGROUND).queued());
+    }
+
+    @Test
+    public void fullLaneRejectsWithoutAffectingOthers() throws InterruptedException {
+        CountDownLatch prefetchRunning = new CountDownLatch(1);
+        submitted.add(dispatcher.submit(WeatherDispatcher.Priority.PREFETCH, () -> {
+            prefetchRunning.countDown();
+            awaitRelease();
+        }));
+        assertTrue(prefetchRunning.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        // One PREFETCH thread is busy; its queue holds 16 more.
+        for (int i = 0; i < 16; i++) {
+            submitted.add(dispatcher.submit(WeatherDispatcher.Priority.PREFETCH, this::awaitRelease));
+        }
+        try {
+            dispatcher.submit(WeatherDispatcher.Priority.PREFETCH, this::awaitRelease);
+            fail("A full lane must reject new work");
+        } catch (RejectedExecutionException expected) {
+            // The caller reports the overload instead of queueing without bound.
+        }
+
+        CountDownLatch foregroundRan = new CountDownLatch(1);
+        dispatcher.submit(WeatherDispatcher.Priority.FOREGROUND, foregroundRan::countDown);
+        assertTrue(foregroundRan.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
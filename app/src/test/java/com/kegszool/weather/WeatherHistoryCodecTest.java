@@ -0,0 +1,188 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class WeatherHistoryCodecTest {
+
+    @Test
+    public void roundTripsDeltasInBothDirections() throws IOException {
+        WeatherHistory.Series series = new WeatherHistory.Series(4);
+        series.add(1_700_000_000L, 125, 1013, 40, 35);
+        series.add(1_700_003_600L, -75, 998, 100, 0);
+        series.add(1_700_007_200L, -300, 1040, 0, 210);
+        series.add(1_800_000_000L, 0, 1013, 55, 12);
+
+        WeatherHistory.Series decoded = decode(WeatherHistoryCodec.encode(series, 0, 4));
+
+        assertSeriesEquals(series, 0, 4, decoded);
+    }
+
+    @Test
+    public void roundTripsExtremeValues() throws IOException {
+        WeatherHistory.Series series = new WeatherHistory.Series(3);
+        series.add(0L, Integer.MAX_VALUE, Integer.MIN_VALUE, 0, -1);
+        series.add(1L, Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 0);
+        series.add(Long.MAX_VALUE / 2, 0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE);
+
+        WeatherHistory.Series decoded = decode(WeatherHistoryCodec.encode(series, 0, 3));
+
+        assertSeriesEquals(series, 0, 3, decoded);
+    }
+
+    @Test
+    public void encodesASliceAndFiltersByTime() throws IOException {
+        WeatherHistory.Series series = hourly(10, 1_000L);
+        byte[] chunk = WeatherHistoryCodec.encode(series, 2, 8);
+
+        assertSeriesEquals(series, 2, 8, decode(chunk));
+
+        WeatherHistory.Series ranged = new WeatherHistory.Series(1);
+        WeatherHistoryCodec.decodeAll(ByteBuffer.wrap(chunk), 1_000L + 3 * 3600, 1_000L + 5 * 3600, ranged);
+        assertSeriesEquals(series, 3, 6, ranged);
+    }
+
+    @Test
+    public void skipsChunksOutsideTheRange() throws IOException {
+        WeatherHistory.Series series = hourly(6, 0L);
+        ByteBuffer buffer = concat(
+                WeatherHistoryCodec.encode(series, 0, 3),
+                WeatherHistoryCodec.encode(series, 3, 6));
+
+        WeatherHistory.Series target = new WeatherHistory.Series(1);
+        WeatherHistoryCodec.decodeAll(buffer, 4 * 3600, Long.MAX_VALUE, target);
+
+        assertSeriesEquals(series, 4, 6, target);
+    }
+
+    @Test
+    public void ignoresATruncatedTrailingChunk() throws IOException {
+        WeatherHistory.Series series = hourly(6, 0L);
+        byte[] complete = WeatherHistoryCodec.encode(series, 0, 3);
+        byte[] interrupted = WeatherHistoryCodec.encode(series, 3, 6);
+
+        for (int cut = 1; cut < interrupted.length; cut++) {
+            ByteBuffer buffer = ByteBuffer.allocate(complete.length + cut);
+            buffer.put(complete).put(interrupted, 0, cut).flip();
+
+            WeatherHistory.Series target = new WeatherHistory.Series(1);
+            WeatherHistoryCodec.decodeAll(buffer, 0L, Long.MAX_VALUE, target);
+
+            assertSeriesEquals(series, 0, 3, target);
+        }
+    }
+
+    @Test
+    public void readsAGoodChunkWrittenAfterAPartialOne() throws IOException {
+        WeatherHistory.Series series = hourly(9, 0L);
+        byte[] first = WeatherHistoryCodec.encode(series, 0, 3);
+        byte[] interrupted = WeatherHistoryCodec.encode(series, 3, 6);
+        byte[] last = WeatherHistoryCodec.encode(series, 6, 9);
+
+        for (int cut = 1; cut < interrupted.length; cut++) {
+            ByteBuffer buffer = ByteBuffer.allocate(first.length + cut + last.length);
+            buffer.put(first).put(interrupted, 0, cut).put(last).flip();
+
+            WeatherHistory.Series target = new WeatherHistory.Series(1);
+            WeatherHistoryCodec.decodeAll(buffer, 0L, Long.MAX_VALUE, target);
+
+            assertEquals("cut at " + cut, 6, target.size());
+            assertSeriesEquals(series, 0, 3, slice(target, 0, 3));
+            assertSeriesEquals(series, 6, 9, slice(target, 3, 6));
+        }
+    }
+
+    @Test
+    public void validLengthStopsBeforeAPartialChunk() {
+        WeatherHistory.Series series = hourly(9, 0L);
+        byte[] first = WeatherHistoryCodec.encode(series, 0, 3);
+        byte[] second = WeatherHistoryCodec.encode(series, 3, 6);
+        byte[] interrupted = WeatherHistoryCodec.encode(series, 6, 9);
+
+        assertEquals(first.length + second.length,
+                WeatherHistoryCodec.validLength(concat(first, second)));
+        assertEquals(5 * 3600L, WeatherHistoryCodec.lastTimestamp(concat(first, second)));
+        for (int cut = 1; cut < interrupted.length; cut++) {
+            ByteBuffer buffer = ByteBuffer.allocate(first.length + cut);
+            buffer.put(first).put(interrupted, 0, cut).flip();
+
+            assertEquals(first.length, WeatherHistoryCodec.validLength(buffer));
+            assertEquals(2 * 3600L, WeatherHistoryCodec.lastTimestamp(buffer));
+        }
+        assertEquals(0, WeatherHistoryCodec.validLength(ByteBuffer.allocate(0)));
+        assertEquals(Long.MIN_VALUE, WeatherHistoryCodec.lastTimestamp(ByteBuffer.allocate(0)));
+    }
+
+    @Test
+    public void skipsAChunkWithACorruptedHeader() throws IOException {
+        WeatherHistory.Series series = hourly(4, 0L);
+        byte[] damaged = WeatherHistoryCodec.encode(series, 0, 2);
+        damaged[0] ^= 0x01;
+
+        WeatherHistory.Series target = decode(
+                concat(damaged, WeatherHistoryCodec.encode(series, 2, 4)).array());
+
+        assertSeriesEquals(series, 2, 4, target);
+    }
+
+    @Test
+    public void skipsAChunkWithADamagedPayload() throws IOException {
+        WeatherHistory.Series series = hourly(4, 0L);
+        byte[] damaged = WeatherHistoryCodec.encode(series, 0, 2);
+        damaged[damaged.length - 1] ^= 0x01;
+        byte[] intact = WeatherHistoryCodec.encode(series, 2, 4);
+
+        assertSeriesEquals(series, 2, 4, decode(concat(damaged, intact).array()));
+        assertEquals(0, WeatherHistoryCodec.validLength(concat(damaged, intact)));
+    }
+
+    private static WeatherHistory.Series hourly(int count, long startSeconds) {
+        WeatherHistory.Series series = new WeatherHistory.Series(count);
+        for (int i = 0; i < count; i++) {
+            series.add(startSeconds + i * 3600L, 100 - 15 * i, 1000 + i, 50 + i, 30 - i);
+        }
+        return series;
+    }
+
+    private static WeatherHistory.Series decode(byte[] chunk) throws IOException {
+        WeatherHistory.Series target = new WeatherHistory.Series(1);
+        WeatherHistoryCodec.decodeAll(ByteBuffer.wrap(chunk), Long.MIN_VALUE, Long.MAX_VALUE, target);
+        return target;
+    }
+
+    private static WeatherHistory.Series slice(WeatherHistory.Series source, int from, int to) {
+        WeatherHistory.Series result = new WeatherHistory.Series(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(source.timestamps[i], source.temperatures[i], source.pressures[i],
+                    source.humidities[i], source.windSpeeds[i]);
+        }
+        return result;
+    }
+
+    private static ByteBuffer concat(byte[] first, byte[] second) {
+        ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+        buffer.put(first).put(second).flip();
+        return buffer;
+    }
+
+    private static void assertSeriesEquals(
+        WeatherHistory.Series expected,
+        int from,
+        int to,
+        WeatherHistory.Series actual
+    ) {
+        assertEquals(to - from, actual.size());
+        for (int i = from; i < to; i++) {
+            int j = i - from;
+            assertEquals(expected.timestamps[i], actual.timestamps[j]);
+            assertEquals(expected.temperatures[i], actual.temperatures[j]);
+            assertEquals(expected.pressures[i], actual.pressures[j]);
+            assertEquals(expected.humidities[i], actual.humidities[j]);
+            assertEquals(expected.windSpeeds[i], actual.windSpeeds[j]);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WeatherMemoryCacheTest {
+
+    private static final long TTL_MS = 60_000L;
+
+    private long now;
+    private WeatherMemoryCache cache;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000L;
+        cache = new WeatherMemoryCache(2, TTL_MS, () -> now);
+    }
+
+    @Test
+    public void freshUntilTheTtlPasses() {
+        WeatherData data = data("Moscow");
+        cache.put("moscow", data);
+
+        WeatherMemoryCache.Entry entry = cache.get("moscow");
+        assertSame(data, entry.data());
+        assertTrue(cache.isFresh(entry));
+
+        now += TTL_MS - 1;
+        assertTrue(cache.isFresh(cache.get("moscow")));
+        now += 1;
+        assertFalse(cache.isFresh(cache.get("moscow")));
+        assertSame(data, cache.get("moscow").data());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        cache.put("a", data("A"));
+        cache.put("b", data("B"));
+        cache.get("a");
+        cache.put("c", data("C"));
+
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a").data().location());
+        assertEquals("C", cache.get("c").data().location());
+    }
+
+    @Test
+    public void backdatedEntriesKeepTheirAge() {
+        long before = System.currentTimeMillis();
+        cache.put("old", data("Old"), TTL_MS / 2);
+
+        WeatherMemoryCache.Entry entry = cache.get("old");
+        assertEquals(now - TTL_MS / 2, entry.storedAtMillis());
+        assertTrue(entry.savedAtMillis() <= System.currentTimeMillis() - TTL_MS / 2);
+        assertTrue(entry.savedAtMillis() >= before - TTL_MS / 2);
+
+        now += TTL_MS / 2;
+        assertFalse(cache.isFresh(cache.get("old")));
+    }
+
+    @Test
+    public void shorterTtlAppliesToExistingEntries() {
+        cache.put("moscow", data("Moscow"));
+        now += 10_000L;
+
+        cache.setTtlMillis(5_000L);
+        assertFalse(cache.isFresh(cache.get("moscow")));
+        cache.setTtlMillis(-1L);
+        assertEquals(0L, cache.getTtlMillis());
+    }
+
+    @Test
+    public void ignoresNullKeysAndData() {
+        cache.put(null, data("Nowhere"));
+        cache.put("empty", null);
+
+        assertNull(cache.get(null));
+        assertNull(cache.get("empty"));
+        assertFalse(cache.isFresh(null));
+    }
+
+    static WeatherData data(String location) {
+        return new WeatherData(location, "clear", 800, "20", "50", "1013", "3", "10",
+                null, null);
+    }
+}
@@ -0,0 +1,47 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class WeatherWidgetContentTest {
+
+    private static final List<WeatherWidgetProvider.DayCell> DAYS = List.of(
+            new WeatherWidgetProvider.DayCell("Mon", "5°", 1),
+            new WeatherWidgetProvider.DayCell("Tue", "7°", 2));
+
+    @Test
+    public void newDataWithTheSameViewNeedsNoRedraw() {
+        WeatherWidgetProvider.Content previous = content(1_000L, "Moscow", DAYS);
+        WeatherWidgetProvider.Content refreshed = content(2_000L, "Moscow", List.copyOf(DAYS));
+
+        assertTrue(refreshed.hasSameView(previous));
+        assertNotEquals(previous, refreshed);
+    }
+
+    @Test
+    public void anyVisibleChangeNeedsARedraw() {
+        WeatherWidgetProvider.Content previous = content(1_000L, "Moscow", DAYS);
+
+        assertFalse(content(1_000L, "Kazan", DAYS).hasSameView(previous));
+        assertFalse(content(1_000L, "Moscow", List.of(
+                new WeatherWidgetProvider.DayCell("Mon", "6°", 1),
+                DAYS.get(1))).hasSameView(previous));
+        assertFalse(content(1_000L, "Moscow", List.of(
+                new WeatherWidgetProvider.DayCell("Mon", "5°", 3),
+                DAYS.get(1))).hasSameView(previous));
+        assertFalse(previous.hasSameView(null));
+    }
+
+    private static WeatherWidgetProvider.Content content(
+        long savedAtMillis,
+        String city,
+        List<WeatherWidgetProvider.DayCell> days
+    ) {
+        return new WeatherWidgetProvider.Content("", savedAtMillis, city, days);
+    }
+}
@@ -0,0 +1,186 @@
+package com.kegszool.weather;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.widget.RemoteViews;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadow.api.Shadow;
+import org.robolectric.shadows.ShadowAppWidgetManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts what one update pass sends to the widget host. Widgets 1 and 2
+ * show the last viewed location and widget 3 is pinned to Paris.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = WeatherWidgetProviderTest.CountingAppWidgetManager.class)
+public class WeatherWidgetProviderTest {
+
+    private static final int[] WIDGET_IDS = {1, 2, 3};
+    private static final WeatherLocation PARIS = WeatherLocation.ofCity("Paris");
+
+    private static final String FORECAST = "{"
+            + "\"list\":[{\"dt\":1699952400,\"main\":{\"temp\":%.1f,\"pressure\":1009,\"humidity\":81},"
+            + "\"weather\":[{\"id\":500,\"description\":\"light rain\"}],"
+            + "\"wind\":{\"speed\":4.5},\"visibility\":10000,\"dt_txt\":\"2023-11-14 09:00:00\"}],"
+            + "\"city\":{\"name\":\"%s\",\"country\":\"XX\"}"
+            + "}";
+
+    private Context context;
+    private AppWidgetManager manager;
+    private CountingAppWidgetManager host;
+
+    @Before
+    public void setUp() throws Exception {
+        context = RuntimeEnvironment.getApplication();
+        manager = AppWidgetManager.getInstance(context);
+        host = Shadow.extract(manager);
+        new WeatherWidgetProvider().onDeleted(context, WIDGET_IDS);
+
+        Field instance = WeatherDatabase.class.getDeclaredField("instance");
+        instance.setAccessible(true);
+        instance.set(null, null);
+
+        LastWeatherStorage.save(context, forecast("Moscow", 12.6), 1_000L);
+        WidgetLocationStore.save(context, 3, PARIS);
+        WeatherDatabase.getInstance(context).putAsync(
+                WeatherRouter.cacheKeyFor(PARIS, CoordinateGrid.DEFAULT), forecast("Paris", 9.0));
+    }
+
+    @Test
+    public void firstPassSendsFullViewsSharedPerLocation() {
+        updatePass();
+
+        assertEquals(List.of(1, 2, 3), host.updatedIds);
+        assertEquals(List.of(), host.partiallyUpdatedIds);
+        assertEquals(List.of(), host.dataChangedIds);
+        assertSame(host.fullViews.get(1), host.fullViews.get(2));
+        assertNotSame(host.fullViews.get(1), host.fullViews.get(3));
+    }
+
+    @Test
+    public void unchangedPassSendsNothing() {
+        updatePass();
+        host.clear();
+
+        updatePass();
+
+        assertEquals(List.of(), host.updatedIds);
+        assertEquals(List.of(), host.partiallyUpdatedIds);
+        assertEquals(List.of(), host.dataChangedIds);
+    }
+
+    @Test
+    public void newDataWithTheSameViewOnlyRefreshesTheHourlyList() throws IOException {
+        updatePass();
+        host.clear();
+
+        LastWeatherStorage.save(context, forecast("Moscow", 12.6), 2_000L);
+        updatePass();
+
+        assertEquals(List.of(), host.updatedIds);
+        assertEquals(List.of(), host.partiallyUpdatedIds);
+        assertEquals(1, host.dataChangedIds.size());
+        assertArrayEquals(new int[] {1, 2}, host.dataChangedIds.get(0));
+        assertEquals(List.of(R.id.widgetHourlyList), host.dataChangedViewIds);
+    }
+
+    @Test
+    public void smallChangeIsAPartialUpdate() throws IOException {
+        updatePass();
+        host.clear();
+
+        LastWeatherStorage.save(context, forecast("Moscow", 20.1), 2_000L);
+        updatePass();
+
+        assertEquals(List.of(), host.updatedIds);
+        assertEquals(List.of(1, 2), host.partiallyUpdatedIds);
+        assertEquals(1, host.dataChangedIds.size());
+        assertArrayEquals(new int[] {1, 2}, host.dataChangedIds.get(0));
+    }
+
+    @Test
+    public void locationChangeIsAFullUpdateForThatWidgetOnly() {
+        updatePass();
+        host.clear();
+
+        WidgetLocationStore.save(context, 2, PARIS);
+        updatePass();
+
+        assertEquals(List.of(2), host.updatedIds);
+        assertEquals(List.of(), host.partiallyUpdatedIds);
+        assertEquals(List.of(), host.dataChangedIds);
+    }
+
+    private void updatePass() {
+        WeatherWidgetProvider.updateAppWidgets(context, manager, WIDGET_IDS, Long.MAX_VALUE);
+    }
+
+    private static WeatherData forecast(String city, double temperature) {
+        try {
+            return ForecastParser.parse(new ByteArrayInputStream(String.format(
+                    Locale.US, FORECAST, temperature, city).getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Records host calls instead of inflating the views. */
+    @Implements(AppWidgetManager.class)
+    public static class CountingAppWidgetManager extends ShadowAppWidgetManager {
+
+        final List<Integer> updatedIds = new ArrayList<>();
+        final Map<Integer, RemoteViews> fullViews = new HashMap<>();
+        final List<Integer> partiallyUpdatedIds = new ArrayList<>();
+        final List<int[]> dataChangedIds = new ArrayList<>();
+        final List<Integer> dataChangedViewIds = new ArrayList<>();
+
+        @Implementation
+        @Override
+        protected void updateAppWidget(int appWidgetId, RemoteViews views) {
+            updatedIds.add(appWidgetId);
+            fullViews.put(appWidgetId, views);
+        }
+
+        @Implementation
+        protected void partiallyUpdateAppWidget(int appWidgetId, RemoteViews views) {
+            partiallyUpdatedIds.add(appWidgetId);
+        }
+
+        @Implementation
+        protected void notifyAppWidgetViewDataChanged(int[] appWidgetIds, int viewId) {
+            dataChangedIds.add(appWidgetIds.clone());
+            dataChangedViewIds.add(viewId);
+        }
+
+        void clear() {
+            updatedIds.clear();
+            fullViews.clear();
+            partiallyUpdatedIds.clear();
+            dataChangedIds.clear();
+            dataChangedViewIds.clear();
+        }
+    }
+}